@@ -0,0 +1,45 @@
+// Times a Decimal-heavy source with each Interpreter.DecimalMode
+
+import plc.project.*;
+
+/**
+ *
+ * Compile alongside the plc directory, as for Harness.java, then run
+ *    -> java DecimalBenchmark [engine] [runs]
+ *
+ *  where engine is TREE (the default), BYTECODE or TIERED. The best time of
+ *  each mode is printed, along with the source's result in that mode.
+ */
+
+public class DecimalBenchmark {
+
+    // Integrates (x^4 - 3x^2 + 2) / (1 + x) over [0, 100] with the midpoint rule
+    private static final String SOURCE = String.join("\n",
+            "FUN main(): Decimal DO",
+            "    LET area = 0.0;",
+            "    LET x = 0.0005;",
+            "    WHILE x < 100.0 DO",
+            "        LET y = ((x * x - 3.0) * x * x + 2.0) / (1.0 + x);",
+            "        area = area + y * 0.001;",
+            "        x = x + 0.001;",
+            "    END",
+            "    RETURN area;",
+            "END");
+
+    public static void main(String[] args) {
+        Interpreter.Engine engine = args.length > 0 ? Interpreter.Engine.valueOf(args[0]) : Interpreter.Engine.TREE;
+        int runs = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+        Ast.Source ast = new Parser(new Lexer(SOURCE).lex()).parseSource();
+
+        for (Interpreter.DecimalMode mode : Interpreter.DecimalMode.values()) {
+            long best = Long.MAX_VALUE;
+            Object result = null;
+            for (int i = 0; i < runs; i++) {
+                long start = System.nanoTime();
+                result = new Interpreter(new Scope(null), engine, mode).visit(ast).getValue();
+                best = Math.min(best, System.nanoTime() - start);
+            }
+            System.out.println(" -> " + mode + ": " + best / 1_000_000 + "ms (" + result + ")");
+        }
+    }
+}
@@ -1,10 +1,12 @@
-// Calls Lexer -> Parser -> Interpreter -> Analyzer -> Generator
+// Calls Lexer -> Parser -> Interpreter -> Analyzer -> Optimizer -> Generator
 
-import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.io.PrintWriter;
-import java.util.Scanner;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
 import plc.project.*;
 
 /**
@@ -23,35 +25,32 @@ public class Harness {
     public static void main(String[] args) {
         String source_file = args[0];
         String java_file = new String("Main.java");
-        String source = new String();
-        Scanner scanner;
+        Ast ast = null;
 
         System.out.println(" -> Generating Java source from " + source_file);
 
-        try {
-            File file = new File(source_file);
-            scanner = new Scanner(file);
-
-            StringBuilder source_contents = new StringBuilder((int) file.length());
-
-            while (scanner.hasNextLine()) {
-                source_contents.append(scanner.nextLine() + System.lineSeparator());
-            }
-            source = source_contents.toString();
-            scanner.close();
-        } catch (IOException ioe) {}
-
-        Lexer lexer = new Lexer(source);
+        // Lex straight from the file while parsing, so neither the source nor
+        // the full token list is ever held in memory
+        try (Reader reader = Files.newBufferedReader(Paths.get(source_file))) {
+            Lexer lexer = new Lexer(reader, Lexer.Engine.TABLE);
+            Parser parser = new Parser(lexer);
+            ast = parser.parseSource();
+        } catch (IOException ioe) {
+            readFailed(source_file, ioe);
+        } catch (UncheckedIOException uioe) {
+            // Raised by the lexer when a read fails mid-parse
+            readFailed(source_file, uioe.getCause());
+        }
         System.out.println(" -> Lexing Complete");
-
-        Parser parser = new Parser(lexer.lex());
-        Ast ast = parser.parseSource();
         System.out.println(" -> Parsing Complete");
 
         Analyzer analyzer = new Analyzer(null);
         analyzer.visit(ast);
         System.out.println(" -> Analyzer Complete");
 
+        ast = new Optimizer().visit(ast);
+        System.out.println(" -> Optimizer Complete");
+
         try {
             FileWriter fw = new FileWriter(java_file);
             PrintWriter pw = new PrintWriter(fw);
@@ -66,4 +65,9 @@ public class Harness {
 
         System.out.println();
     }
+
+    private static void readFailed(String source_file, IOException ioe) {
+        System.err.println(" -> Could not read " + source_file + ": " + ioe);
+        System.exit(1);
+    }
 }
@@ -0,0 +1,63 @@
+// Times and measures the allocation of a call- and branch-heavy source with each Interpreter.Engine
+
+import java.lang.management.ManagementFactory;
+import plc.project.*;
+
+/**
+ *
+ * Compile alongside the plc directory, as for Harness.java, then run
+ *    -> java InterpBench [engine] [runs]
+ *
+ *  where engine is TREE, BYTECODE or TIERED, or every engine if none is
+ *  given. The best time of each engine is printed, along with the bytes its
+ *  last run allocated and the source's result.
+ */
+
+public class InterpBench {
+
+    // Sums the Collatz stopping times of 1 to 20000
+    private static final String SOURCE = String.join("\n",
+            "FUN collatz(n: Integer): Integer DO",
+            "    LET steps = 0;",
+            "    LET m = n;",
+            "    WHILE m != 1 DO",
+            "        IF m - m / 2 * 2 == 0 DO",
+            "            m = m / 2;",
+            "        ELSE",
+            "            m = 3 * m + 1;",
+            "        END",
+            "        steps = steps + 1;",
+            "    END",
+            "    RETURN steps;",
+            "END",
+            "FUN main(): Integer DO",
+            "    LET total = 0;",
+            "    LET i = 1;",
+            "    WHILE i < 20001 DO",
+            "        total = total + collatz(i);",
+            "        i = i + 1;",
+            "    END",
+            "    RETURN total;",
+            "END");
+
+    public static void main(String[] args) {
+        Interpreter.Engine[] engines = args.length > 0 ? new Interpreter.Engine[] {Interpreter.Engine.valueOf(args[0])} : Interpreter.Engine.values();
+        int runs = args.length > 1 ? Integer.parseInt(args[1]) : 10;
+        Ast.Source ast = new Parser(new Lexer(SOURCE).lex()).parseSource();
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+        for (Interpreter.Engine engine : engines) {
+            long best = Long.MAX_VALUE;
+            long allocated = 0;
+            Object result = null;
+            for (int i = 0; i < runs; i++) {
+                long bytes = threads.getCurrentThreadAllocatedBytes();
+                long start = System.nanoTime();
+                result = new Interpreter(new Scope(null), engine).visit(ast).getValue();
+                best = Math.min(best, System.nanoTime() - start);
+                allocated = threads.getCurrentThreadAllocatedBytes() - bytes;
+            }
+            System.out.println(" -> " + engine + ": " + best / 1_000_000 + "ms, " + allocated / 1_000_000 + "MB allocated (" + result + ")");
+        }
+    }
+}
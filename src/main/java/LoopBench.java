@@ -0,0 +1,54 @@
+// Times and measures the allocation of a loop over a function's variables with each Interpreter.Engine
+
+import java.lang.management.ManagementFactory;
+import plc.project.*;
+
+/**
+ *
+ * Compile alongside the plc directory, as for Harness.java, then run
+ *    -> java LoopBench [engine] [runs]
+ *
+ *  where engine is TREE, BYTECODE or TIERED, or every engine if none is
+ *  given. The best time of each engine is printed, along with the bytes its
+ *  last run allocated and the source's result.
+ */
+
+public class LoopBench {
+
+    // 10M iterations over main's variables, all of which stay in a long
+    private static final String SOURCE = String.join("\n",
+            "FUN main(): Integer DO",
+            "    LET sum = 0;",
+            "    LET odd = 0;",
+            "    LET i = 0;",
+            "    WHILE i < 10000000 DO",
+            "        IF i - i / 2 * 2 == 1 DO",
+            "            odd = odd + 1;",
+            "        END",
+            "        sum = sum + i * 3 - odd;",
+            "        i = i + 1;",
+            "    END",
+            "    RETURN sum;",
+            "END");
+
+    public static void main(String[] args) {
+        Interpreter.Engine[] engines = args.length > 0 ? new Interpreter.Engine[] {Interpreter.Engine.valueOf(args[0])} : Interpreter.Engine.values();
+        int runs = args.length > 1 ? Integer.parseInt(args[1]) : 3;
+        Ast.Source ast = new Parser(new Lexer(SOURCE).lex()).parseSource();
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+        for (Interpreter.Engine engine : engines) {
+            long best = Long.MAX_VALUE;
+            long allocated = 0;
+            Object result = null;
+            for (int i = 0; i < runs; i++) {
+                long bytes = threads.getCurrentThreadAllocatedBytes();
+                long start = System.nanoTime();
+                result = new Interpreter(new Scope(null), engine).visit(ast).getValue();
+                best = Math.min(best, System.nanoTime() - start);
+                allocated = threads.getCurrentThreadAllocatedBytes() - bytes;
+            }
+            System.out.println(" -> " + engine + ": " + best / 1_000_000 + "ms, " + allocated / 1_000_000 + "MB allocated (" + result + ")");
+        }
+    }
+}
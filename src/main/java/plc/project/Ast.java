@@ -4,6 +4,8 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
+import java.util.function.Supplier;
 
 /**
  * See the Parser assignment specification for specific notes on each AST class
@@ -11,6 +13,13 @@ import java.util.Optional;
  */
 public abstract class Ast {
 
+    /**
+     * Calls the {@link Visitor} method for this node's type, which is a single
+     * virtual call instead of the chain of instanceof checks it replaces in
+     * {@link Visitor#visit(Ast)}.
+     */
+    public abstract <T> T accept(Visitor<T> visitor);
+
     public static final class Source extends Ast {
 
         private final List<Global> globals;
@@ -29,6 +38,11 @@ public abstract class Ast {
             return functions;
         }
 
+        @Override
+        public <T> T accept(Visitor<T> visitor) {
+            return visitor.visit(this);
+        }
+
         @Override
         public boolean equals(Object obj) {
             return obj instanceof Source &&
@@ -94,6 +108,11 @@ public abstract class Ast {
         }
 
 
+        @Override
+        public <T> T accept(Visitor<T> visitor) {
+            return visitor.visit(this);
+        }
+
         @Override
         public boolean equals(Object obj) {
             return obj instanceof Global &&
@@ -123,8 +142,10 @@ public abstract class Ast {
         private final List<String> parameters;
         private final List<String> parameterTypeNames;
         private final Optional<String> returnTypeName;
-        private final List<Statement> statements;
+        private List<Statement> statements;
+        private Supplier<List<Statement>> body = null;
         private Environment.Function function = null;
+        private Set<String> callerNames = null;
         
         public Function(String name, List<String> parameters, List<Statement> statements) {
             this(name, parameters, new ArrayList<>(), Optional.of("Any"), statements);
@@ -142,6 +163,15 @@ public abstract class Ast {
             this.statements = statements;
         }
 
+        /**
+         * Creates a function whose statements are only parsed by the given
+         * body the first time they are needed, see {@link #getStatements()}.
+         */
+        public Function(String name, List<String> parameters, List<String> parameterTypeNames, Optional<String> returnTypeName, Supplier<List<Statement>> body) {
+            this(name, parameters, parameterTypeNames, returnTypeName, (List<Statement>) null);
+            this.body = body;
+        }
+
         public String getName() {
             return name;
         }
@@ -158,10 +188,22 @@ public abstract class Ast {
             return returnTypeName;
         }
 
+        /**
+         * Returns the statements, parsing and caching them first if the body
+         * has not been parsed yet.
+         */
         public List<Statement> getStatements() {
+            if (body != null) {
+                statements = body.get();
+                body = null;
+            }
             return statements;
         }
 
+        public boolean isParsed() {
+            return body == null;
+        }
+
         public Environment.Function getFunction() {
             if (function == null) {
                 throw new IllegalStateException("function is uninitialized");
@@ -173,6 +215,36 @@ public abstract class Ast {
             this.function = function;
         }
 
+        /**
+         * Returns true if the {@link PurityAnalyzer} found that the function
+         * has no side effects and depends only on its arguments (and the
+         * variables named by {@link #getCallerNames()}).
+         */
+        public boolean isPure() {
+            return callerNames != null;
+        }
+
+        /**
+         * Returns the names of the parameters (of this function, and any it
+         * calls) which are bound to a variable of the caller's scope instead
+         * of an argument if one with the name is visible there.
+         */
+        public Set<String> getCallerNames() {
+            if (callerNames == null) {
+                throw new IllegalStateException("function is not pure");
+            }
+            return callerNames;
+        }
+
+        public void setCallerNames(Set<String> callerNames) {
+            this.callerNames = callerNames;
+        }
+
+
+        @Override
+        public <T> T accept(Visitor<T> visitor) {
+            return visitor.visit(this);
+        }
 
         @Override
         public boolean equals(Object obj) {
@@ -181,7 +253,7 @@ public abstract class Ast {
                     parameters.equals(((Ast.Function) obj).parameters) &&
                     parameterTypeNames.equals(((Ast.Function) obj).parameterTypeNames) &&
                     returnTypeName.equals(((Ast.Function) obj).returnTypeName) &&
-                    statements.equals(((Ast.Function) obj).statements) &&
+                    getStatements().equals(((Ast.Function) obj).getStatements()) &&
                     Objects.equals(function, ((Ast.Function) obj).function);
         }
 
@@ -193,7 +265,7 @@ public abstract class Ast {
                     ", parameters=" + parameters +
                     ", parameterTypeNames=" + parameterTypeNames +
                     ", returnTypeName='" + returnTypeName + '\'' +
-                    ", statements=" + statements +
+                    ", statements=" + getStatements() +
                     ", function=" + function +
                     '}';
         }
@@ -214,6 +286,11 @@ public abstract class Ast {
                 return expression;
             }
 
+            @Override
+            public <T> T accept(Visitor<T> visitor) {
+                return visitor.visit(this);
+            }
+
             @Override
             public boolean equals(Object obj) {
                 return obj instanceof Ast.Statement.Expression &&
@@ -235,6 +312,7 @@ public abstract class Ast {
             private final Optional<String> typeName;
             private Optional<Ast.Expression> value;
             private Environment.Variable variable = null;
+            private int slot = -1;
 
             public Declaration(String name, Optional<Ast.Expression> value) {
                 this(name, Optional.empty(), value);
@@ -268,8 +346,24 @@ public abstract class Ast {
             public void setVariable(Environment.Variable variable) {
                 this.variable = variable;
             }
-            
-            
+
+            /**
+             * Returns the slot of the declared variable in its block's frame as
+             * assigned by the {@link Resolver}, or -1 if unresolved.
+             */
+            public int getSlot() {
+                return slot;
+            }
+
+            public void setSlot(int slot) {
+                this.slot = slot;
+            }
+
+            @Override
+            public <T> T accept(Visitor<T> visitor) {
+                return visitor.visit(this);
+            }
+
             @Override
             public boolean equals(Object obj) {
                 return obj instanceof Declaration &&
@@ -309,6 +403,11 @@ public abstract class Ast {
                 return value;
             }
 
+            @Override
+            public <T> T accept(Visitor<T> visitor) {
+                return visitor.visit(this);
+            }
+
             @Override
             public boolean equals(Object obj) {
                 return obj instanceof Assignment &&
@@ -331,6 +430,8 @@ public abstract class Ast {
             private final Ast.Expression condition;
             private final List<Statement> thenStatements;
             private final List<Statement> elseStatements;
+            private boolean thenScoped = true;
+            private boolean elseScoped = true;
 
 
             public If(Ast.Expression condition, List<Statement> thenStatements, List<Statement> elseStatements) {
@@ -351,6 +452,30 @@ public abstract class Ast {
                 return elseStatements;
             }
 
+            /**
+             * Returns true if the then block needs a scope of its own, which
+             * the {@link Resolver} finds is only if it
+             * {@link Resolver#declares declares} variables. Until resolved,
+             * both blocks do.
+             */
+            public boolean isThenScoped() {
+                return thenScoped;
+            }
+
+            public boolean isElseScoped() {
+                return elseScoped;
+            }
+
+            public void setScoped(boolean thenScoped, boolean elseScoped) {
+                this.thenScoped = thenScoped;
+                this.elseScoped = elseScoped;
+            }
+
+            @Override
+            public <T> T accept(Visitor<T> visitor) {
+                return visitor.visit(this);
+            }
+
             @Override
             public boolean equals(Object obj) {
                 return obj instanceof If &&
@@ -386,6 +511,11 @@ public abstract class Ast {
 
             public List<Ast.Statement.Case> getCases() { return cases; }
 
+            @Override
+            public <T> T accept(Visitor<T> visitor) {
+                return visitor.visit(this);
+            }
+
             @Override
             public boolean equals(Object obj) {
                 return obj instanceof Switch &&
@@ -421,6 +551,11 @@ public abstract class Ast {
                 return statements;
             }
 
+            @Override
+            public <T> T accept(Visitor<T> visitor) {
+                return visitor.visit(this);
+            }
+
             @Override
             public boolean equals(Object obj) {
                 return obj instanceof Case &&
@@ -442,6 +577,7 @@ public abstract class Ast {
 
             private final Ast.Expression condition;
             private final List<Statement> statements;
+            private boolean scoped = true;
 
             public While(Ast.Expression condition, List<Statement> statements) {
                 this.condition = condition;
@@ -456,6 +592,23 @@ public abstract class Ast {
                 return statements;
             }
 
+            /**
+             * Returns true if the block needs a scope of its own, as for
+             * {@link If#isThenScoped()}.
+             */
+            public boolean isScoped() {
+                return scoped;
+            }
+
+            public void setScoped(boolean scoped) {
+                this.scoped = scoped;
+            }
+
+            @Override
+            public <T> T accept(Visitor<T> visitor) {
+                return visitor.visit(this);
+            }
+
             @Override
             public boolean equals(Object obj) {
                 return obj instanceof While &&
@@ -485,6 +638,11 @@ public abstract class Ast {
                 return value;
             }
 
+            @Override
+            public <T> T accept(Visitor<T> visitor) {
+                return visitor.visit(this);
+            }
+
             @Override
             public boolean equals(Object obj) {
                 return obj instanceof Return &&
@@ -533,6 +691,11 @@ public abstract class Ast {
 
 
 
+            @Override
+            public <T> T accept(Visitor<T> visitor) {
+                return visitor.visit(this);
+            }
+
             @Override
             public boolean equals(Object obj) {
                 return obj instanceof Literal &&
@@ -576,6 +739,11 @@ public abstract class Ast {
             }
 
 
+            @Override
+            public <T> T accept(Visitor<T> visitor) {
+                return visitor.visit(this);
+            }
+
             @Override
             public boolean equals(Object obj) {
                 return obj instanceof Group &&
@@ -631,6 +799,11 @@ public abstract class Ast {
                 this.type = type;
             }
 
+            @Override
+            public <T> T accept(Visitor<T> visitor) {
+                return visitor.visit(this);
+            }
+
             @Override
             public boolean equals(Object obj) {
                 return obj instanceof Binary &&
@@ -658,6 +831,8 @@ public abstract class Ast {
             private final Optional<Ast.Expression> offset;
             private final String name;
             private Environment.Variable variable = null;
+            private int depth = -1;
+            private int slot = -1;
 
             public Access(Optional<Ast.Expression> offset, String name) {
                 this.offset = offset;
@@ -683,11 +858,38 @@ public abstract class Ast {
                 this.variable = variable;
             }
 
+            /**
+             * Returns true if the {@link Resolver} found the declaration of the
+             * variable, which is then at {@link #getSlot()} of the frame
+             * {@link #getDepth()} blocks out from the access.
+             */
+            public boolean isResolved() {
+                return slot != -1;
+            }
+
+            public int getDepth() {
+                return depth;
+            }
+
+            public int getSlot() {
+                return slot;
+            }
+
+            public void setSlot(int depth, int slot) {
+                this.depth = depth;
+                this.slot = slot;
+            }
+
             @Override
             public Environment.Type getType() {
                 return getVariable().getType();
             }
 
+            @Override
+            public <T> T accept(Visitor<T> visitor) {
+                return visitor.visit(this);
+            }
+
             @Override
             public boolean equals(Object obj) {
                 return obj instanceof Access &&
@@ -743,6 +945,11 @@ public abstract class Ast {
                 return getFunction().getReturnType();
             }
 
+            @Override
+            public <T> T accept(Visitor<T> visitor) {
+                return visitor.visit(this);
+            }
+
             @Override
             public boolean equals(Object obj) {
                 return obj instanceof Ast.Expression.Function &&
@@ -788,6 +995,11 @@ public abstract class Ast {
                 this.type = type;
             }
 
+            @Override
+            public <T> T accept(Visitor<T> visitor) {
+                return visitor.visit(this);
+            }
+
             @Override
             public boolean equals(Object obj) {
                 return obj instanceof Ast.Expression.PlcList &&
@@ -810,43 +1022,7 @@ public abstract class Ast {
     public interface Visitor<T> {
 
         default T visit(Ast ast) {
-            if (ast instanceof Ast.Source) {
-                return visit((Ast.Source) ast);
-            } else if (ast instanceof Ast.Global) {
-                return visit((Ast.Global) ast);
-            } else if (ast instanceof Ast.Function) {
-                return visit((Ast.Function) ast);
-            } else if (ast instanceof Ast.Statement.Expression) {
-                return visit((Ast.Statement.Expression) ast);
-            } else if (ast instanceof Ast.Statement.Declaration) {
-                return visit((Ast.Statement.Declaration) ast);
-            } else if (ast instanceof Ast.Statement.Assignment) {
-                return visit((Ast.Statement.Assignment) ast);
-            } else if (ast instanceof Ast.Statement.If) {
-                return visit((Ast.Statement.If) ast);
-            } else if (ast instanceof Ast.Statement.Switch) {
-                return visit((Ast.Statement.Switch) ast);
-            } else if (ast instanceof Ast.Statement.Case) {
-                return visit((Ast.Statement.Case) ast);
-            } else if (ast instanceof Ast.Statement.While) {
-                return visit((Ast.Statement.While) ast);
-            } else if (ast instanceof Ast.Statement.Return) {
-                return visit((Ast.Statement.Return) ast);
-            } else if (ast instanceof Ast.Expression.Literal) {
-                return visit((Ast.Expression.Literal) ast);
-            } else if (ast instanceof Ast.Expression.Group) {
-                return visit((Ast.Expression.Group) ast);
-            } else if (ast instanceof Ast.Expression.Binary) {
-                return visit((Ast.Expression.Binary) ast);
-            } else if (ast instanceof Ast.Expression.Access) {
-                return visit((Ast.Expression.Access) ast);
-            } else if (ast instanceof Ast.Expression.Function) {
-                return visit((Ast.Expression.Function) ast);
-            } else if (ast instanceof Ast.Expression.PlcList) {
-                return visit((Ast.Expression.PlcList) ast);
-            } else {
-                throw new AssertionError("Unimplemented AST type: " + ast.getClass().getName() + ".");
-            }
+            return ast.accept(this);
         }
 
         T visit(Ast.Source ast);
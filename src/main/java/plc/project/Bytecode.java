@@ -0,0 +1,262 @@
+package plc.project;
+
+import java.math.BigInteger;
+import java.util.List;
+
+/**
+ * The compiled code of a function (or a global's initializer), as produced by
+ * the {@link BytecodeCompiler} and run by the {@link VirtualMachine}.
+ *
+ * The code is a sequence of int-coded instructions, each an opcode followed by
+ * its operands, operating on a stack of values. Values are the raw objects an
+ * {@link Environment.PlcObject} would hold, with {@link #NIL} for nil, except
+ * that Integers which fit in a long are held as a {@code Long} (see
+ * {@link #fromValue(Object)}). Jump targets are absolute indices into the code.
+ *
+ * Variables are given by three operands, being (depth, slot, name): the
+ * variable in slot of the frame depth levels out from the current one, or, if
+ * the depth is -1 or the slot is not yet defined at runtime, the variable with
+ * the name (a constant) looked up through the frames and then the globals.
+ */
+public final class Bytecode {
+
+    public static final Object NIL = Environment.NIL.getValue();
+
+    /**
+     * The value returned by the code of a loop which finishes without a
+     * {@code RETURN} (see {@link BytecodeCompiler#compile(Ast.Statement.While)}).
+     */
+    public static final Object DONE = new Object();
+
+    /** {@code CONST k}: pushes constant k. */
+    public static final int CONST = 0;
+    /** {@code POP}: pops a value. */
+    public static final int POP = 1;
+    /** {@code LOAD depth slot name}: pushes a variable's value. */
+    public static final int LOAD = 2;
+    /** {@code STORE depth slot name}: pops a value into a mutable variable. */
+    public static final int STORE = 3;
+    /** {@code LOAD_INDEX depth slot name}: pops an offset, pushing that element of a variable's list. */
+    public static final int LOAD_INDEX = 4;
+    /** {@code STORE_INDEX depth slot name}: pops an offset then a value, setting that element of a variable's list. */
+    public static final int STORE_INDEX = 5;
+    /** {@code DECLARE slot name}: pops a value into a new variable in the current frame. */
+    public static final int DECLARE = 6;
+    /** {@code ENTER k block}: enters a frame for the block with the index block, whose variable names are constant k. */
+    public static final int ENTER = 7;
+    /** {@code EXIT}: exits the current block's frame. */
+    public static final int EXIT = 8;
+    /** {@code JUMP target} */
+    public static final int JUMP = 9;
+    /** {@code JUMP_IF_FALSE target}: pops a Boolean condition, jumping if it is false. */
+    public static final int JUMP_IF_FALSE = 10;
+    /** {@code JUMP_IF_NUMBER target}: jumps if the top value is an Integer or Decimal. */
+    public static final int JUMP_IF_NUMBER = 11;
+    /** {@code JUMP_IF_STRING target}: jumps if the top value is a String. */
+    public static final int JUMP_IF_STRING = 12;
+    /** {@code CASE target}: pops a case value, then if it equals the switch's value pops that too and jumps. */
+    public static final int CASE = 13;
+    /** {@code JSR target}: pushes the address after it and jumps to a subroutine. */
+    public static final int JSR = 14;
+    /** {@code RET}: returns from a subroutine, keeping the value it pushed. */
+    public static final int RET = 15;
+    /** {@code FUNCTION name arity site}: pushes the function with the name (a constant) and arity, cached in the call site. */
+    public static final int FUNCTION = 16;
+    /** {@code INVOKE arity}: pops the arguments and the function, pushing its result. */
+    public static final int INVOKE = 17;
+    /** {@code RETURN}: pops a value and returns it from the function. */
+    public static final int RETURN = 18;
+    /** {@code LIST size}: pops the values of a list, pushing the list. */
+    public static final int LIST = 19;
+    /** {@code CHECK op}: throws if the top value is an invalid left operand of the operation op (an opcode). */
+    public static final int CHECK = 20;
+    /** {@code AND target}: if the top value is FALSE jumps, and otherwise pops it. */
+    public static final int AND = 21;
+    /** {@code OR target}: if the top value is TRUE jumps, and otherwise pops it. */
+    public static final int OR = 22;
+    /** {@code BOOLEAN}: throws if the top value is not a Boolean. */
+    public static final int BOOLEAN = 23;
+    public static final int EQUAL = 24;
+    public static final int NOT_EQUAL = 25;
+    public static final int LESS = 26;
+    public static final int GREATER = 27;
+    /** {@code ADD}: adds two numbers or concatenates (the string form of) two values if either is a String. */
+    public static final int ADD = 28;
+    /** {@code CONCAT}: concatenates the string forms of two values. */
+    public static final int CONCAT = 29;
+    public static final int SUBTRACT = 30;
+    public static final int MULTIPLY = 31;
+    public static final int DIVIDE = 32;
+    public static final int POWER = 33;
+    /** {@code THROW k}: throws the RuntimeException produced by the constant k, a {@link Throw}. */
+    public static final int THROW = 34;
+    /** {@code TAIL_INVOKE arity}: pops the arguments and the function, returning its result from the function. */
+    public static final int TAIL_INVOKE = 35;
+
+    /**
+     * The kinds of {@link #getHandlers() handlers}.
+     *
+     *  - {@link #WRAP}, wrapping any RuntimeException (as for an assignment)
+     *  - {@link #ARITHMETIC}, rethrowing an ArithmeticException as a
+     *    RuntimeException with its message (as for a division)
+     */
+    public static final int WRAP = 0;
+    public static final int ARITHMETIC = 1;
+
+    private final String name;
+    private final int[] code;
+    private final Object[] constants;
+    private final int[] handlers;
+    private final int maxStack;
+    private final String[] parameters;
+    private final int[] parameterSlots;
+    private final String[] names;
+    private final Environment.Function[] callSites;
+    private final int[] callSiteVersions;
+    private final int blocks;
+
+    public Bytecode(String name, int[] code, Object[] constants, int[] handlers, int maxStack, String[] parameters, int[] parameterSlots, String[] names, int callSites, int blocks) {
+        this.name = name;
+        this.code = code;
+        this.constants = constants;
+        this.handlers = handlers;
+        this.maxStack = maxStack;
+        this.parameters = parameters;
+        this.parameterSlots = parameterSlots;
+        this.names = names;
+        this.callSites = new Environment.Function[callSites];
+        this.callSiteVersions = new int[callSites];
+        this.blocks = blocks;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int[] getCode() {
+        return code;
+    }
+
+    public Object[] getConstants() {
+        return constants;
+    }
+
+    /**
+     * Returns the exception handlers as (start, end, kind) triples, each
+     * covering the code {@code [start, end)}. Handlers are ordered innermost
+     * first, so an exception is passed through each handler covering it in
+     * order.
+     */
+    public int[] getHandlers() {
+        return handlers;
+    }
+
+    public int getMaxStack() {
+        return maxStack;
+    }
+
+    /**
+     * Returns the parameter names, which are bound in order to the given slots
+     * of the function's frame.
+     */
+    public String[] getParameters() {
+        return parameters;
+    }
+
+    public int[] getParameterSlots() {
+        return parameterSlots;
+    }
+
+    /**
+     * Returns the variable names of the function's frame by slot, or an empty
+     * array if the function needs no frame.
+     */
+    public String[] getNames() {
+        return names;
+    }
+
+    /**
+     * Returns the number of blocks which have a frame, which are numbered by
+     * the operands of their {@code ENTER} instructions.
+     */
+    public int getBlocks() {
+        return blocks;
+    }
+
+    /**
+     * Returns the value held for a raw value, which is the value itself except
+     * for a BigInteger that fits in a long, held as a {@code Long}. As each
+     * Integer has exactly one form, values are still compared with equals.
+     */
+    public static Object fromValue(Object value) {
+        if (value instanceof BigInteger integer && integer.bitLength() < Long.SIZE) {
+            return integer.longValue();
+        }
+        return value;
+    }
+
+    /**
+     * Returns the raw value of a held value, the inverse of
+     * {@link #fromValue(Object)}.
+     */
+    public static Object toValue(Object value) {
+        return value instanceof Long integer ? BigInteger.valueOf(integer) : value;
+    }
+
+    /**
+     * Returns the function cached for a call site if it was cached with the
+     * given number of function definitions (see
+     * {@link Scope#getFunctionDefinitions()}), or null. The code is run in a
+     * single scope, so the function found by a call site only changes with a
+     * new definition.
+     */
+    public Environment.Function getCallSite(int site, int definitions) {
+        return callSiteVersions[site] == definitions ? callSites[site] : null;
+    }
+
+    public void setCallSite(int site, Environment.Function function, int definitions) {
+        callSites[site] = function;
+        callSiteVersions[site] = definitions;
+    }
+
+    /**
+     * The constant of a {@code THROW}, which creates the exception it throws
+     * each time it is run.
+     */
+    @FunctionalInterface
+    public interface Throw {
+
+        RuntimeException exception();
+
+    }
+
+    /**
+     * Returns the instructions of the code, one per line, for debugging.
+     */
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder(name).append(":\n");
+        for (int pc = 0; pc < code.length; ) {
+            int op = code[pc];
+            builder.append(pc).append('\t').append(NAMES.get(op));
+            for (int i = 1; i <= OPERANDS[op]; i++) {
+                builder.append(' ').append(code[pc + i]);
+            }
+            builder.append('\n');
+            pc += 1 + OPERANDS[op];
+        }
+        return builder.toString();
+    }
+
+    private static final List<String> NAMES = List.of("CONST", "POP", "LOAD", "STORE", "LOAD_INDEX", "STORE_INDEX",
+            "DECLARE", "ENTER", "EXIT", "JUMP", "JUMP_IF_FALSE", "JUMP_IF_NUMBER", "JUMP_IF_STRING", "CASE", "JSR", "RET",
+            "FUNCTION", "INVOKE", "RETURN", "LIST", "CHECK", "AND", "OR", "BOOLEAN", "EQUAL", "NOT_EQUAL", "LESS",
+            "GREATER", "ADD", "CONCAT", "SUBTRACT", "MULTIPLY", "DIVIDE", "POWER", "THROW",
+            "TAIL_INVOKE");
+
+    /**
+     * The number of operands of each opcode.
+     */
+    static final int[] OPERANDS = {1, 0, 3, 3, 3, 3, 2, 2, 0, 1, 1, 1, 1, 1, 1, 0, 3, 1, 0, 1, 1, 1, 1, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 0, 1, 1};
+
+}
@@ -0,0 +1,575 @@
+package plc.project;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+/**
+ * Compiles functions and the initializers of globals to {@link Bytecode}
+ * which, when run by the {@link VirtualMachine}, has exactly the behavior of
+ * the {@link Interpreter}: the same values, the same output and the same
+ * exceptions (including the order operands are evaluated in and when they are
+ * evaluated more than once).
+ *
+ * Variables are resolved as by the {@link Resolver}, except that a function
+ * which has no parameters and declares no variables gets no frame at runtime
+ * either (and so is not counted in the depth of a variable), since an empty
+ * scope can never be observed.
+ */
+public final class BytecodeCompiler implements Ast.Visitor<Void> {
+
+    private static final Bytecode.Throw INVALID_CLASS = () -> new RuntimeException("Invalid class type");
+
+    private int[] code = new int[64];
+    private int size = 0;
+    private final List<Object> constants = new ArrayList<>();
+    private final Map<Object, Integer> constantIndices = new HashMap<>();
+    private final List<Integer> handlers = new ArrayList<>();
+    private final List<Block> blocks = new ArrayList<>();
+    private int stack = 0;
+    private int maxStack = 0;
+    private int callSites = 0;
+    private int framedBlocks = 0;
+    private final Interpreter.DecimalMode decimals;
+
+    public BytecodeCompiler() {
+        this(Interpreter.DecimalMode.BIG_DECIMAL);
+    }
+
+    public BytecodeCompiler(Interpreter.DecimalMode decimals) {
+        this.decimals = decimals;
+    }
+
+    /**
+     * Compiles a function, which returns {@link Bytecode#NIL} if it finishes
+     * without a {@code RETURN}.
+     */
+    public Bytecode compile(Ast.Function ast) {
+        Block block = new Block(!ast.getParameters().isEmpty() || Resolver.declares(ast.getStatements()));
+        blocks.add(block);
+        String[] parameters = new String[ast.getParameters().size()];
+        int[] parameterSlots = new int[parameters.length];
+        for (int i = 0; i < parameters.length; i++) {
+            parameters[i] = ast.getParameters().get(i).intern();
+            parameterSlots[i] = block.declare(parameters[i]);
+        }
+        ast.getStatements().forEach(this::visit);
+        emit(Bytecode.CONST, 1, constant(Bytecode.NIL));
+        emit(Bytecode.RETURN, -1);
+        blocks.clear();
+        return build(ast.getName(), parameters, parameterSlots, block.names.toArray(new String[0]));
+    }
+
+    /**
+     * Compiles the initializer of a global, which returns its value.
+     */
+    public Bytecode compile(Ast.Global ast) {
+        if (ast.getValue().isPresent()) {
+            visit(ast.getValue().get());
+        } else {
+            emit(Bytecode.CONST, 1, constant(Bytecode.NIL));
+        }
+        emit(Bytecode.RETURN, -1);
+        return build(ast.getName(), new String[0], new int[0], new String[0]);
+    }
+
+    /**
+     * Compiles a loop on its own, to finish a loop being run by the
+     * interpreter. The variables used in the loop which are declared outside
+     * of it are given slots in a frame around it, whose names are those of
+     * the bytecode (as for a function), to be run in that frame. The code
+     * returns {@link Bytecode#DONE} if the loop finishes without a
+     * {@code RETURN}.
+     */
+    public Bytecode compile(Ast.Statement.While ast) {
+        Block block = new Block(true);
+        block.outer = true;
+        blocks.add(block);
+        visit(ast);
+        emit(Bytecode.CONST, 1, constant(Bytecode.DONE));
+        emit(Bytecode.RETURN, -1);
+        blocks.clear();
+        return build("WHILE", new String[0], new int[0], block.names.toArray(new String[0]));
+    }
+
+    private Bytecode build(String name, String[] parameters, int[] parameterSlots, String[] names) {
+        int[] handlers = new int[this.handlers.size()];
+        for (int i = 0; i < handlers.length; i++) {
+            handlers[i] = this.handlers.get(i);
+        }
+        return new Bytecode(name, Arrays.copyOf(code, size), constants.toArray(), handlers, maxStack, parameters, parameterSlots, names, callSites, framedBlocks);
+    }
+
+    @Override
+    public Void visit(Ast.Source ast) {
+        throw new RuntimeException("Sources are run by the VirtualMachine.");
+    }
+
+    @Override
+    public Void visit(Ast.Global ast) {
+        throw new RuntimeException("Globals are compiled by compile(Ast.Global).");
+    }
+
+    @Override
+    public Void visit(Ast.Function ast) {
+        throw new RuntimeException("Functions are compiled by compile(Ast.Function).");
+    }
+
+    @Override
+    public Void visit(Ast.Statement.Expression ast) {
+        visit(ast.getExpression());
+        emit(Bytecode.POP, -1);
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Statement.Declaration ast) {
+        if (ast.getValue().isPresent()) {
+            visit(ast.getValue().get());
+        } else {
+            emit(Bytecode.CONST, 1, constant(Bytecode.NIL));
+        }
+        String name = ast.getName().intern();
+        emit(Bytecode.DECLARE, -1, blocks.getLast().declare(name), constant(name));
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Statement.Assignment ast) {
+        int start = size;
+        if (ast.getReceiver() instanceof Ast.Expression.Access receiver) {
+            visit(ast.getValue());
+            if (receiver.getOffset().isPresent()) {
+                visit(receiver.getOffset().get());
+                emitVariable(Bytecode.STORE_INDEX, -2, receiver.getName());
+            } else {
+                emitVariable(Bytecode.STORE, -1, receiver.getName());
+            }
+        } else {
+            // The interpreter casts the receiver before evaluating anything
+            Ast.Expression receiver = ast.getReceiver();
+            emit(Bytecode.THROW, 0, constant(castException(receiver)));
+        }
+        handler(start, Bytecode.WRAP);
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Statement.If ast) {
+        visit(ast.getCondition());
+        int otherwise = jump(Bytecode.JUMP_IF_FALSE, -1);
+        visitBlock(ast.getThenStatements());
+        if (ast.getElseStatements().isEmpty()) {
+            patch(otherwise);
+        } else {
+            int end = jump(Bytecode.JUMP, 0);
+            patch(otherwise);
+            visitBlock(ast.getElseStatements());
+            patch(end);
+        }
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Statement.Switch ast) {
+        List<Ast.Statement.Case> cases = ast.getCases();
+        visit(ast.getCondition());
+        if (cases.isEmpty()) {
+            emit(Bytecode.THROW, 0, constant((Bytecode.Throw) NoSuchElementException::new));
+            emit(Bytecode.POP, -1);
+            return null;
+        }
+        int[] matches = new int[cases.size()];
+        for (int i = 0; i < cases.size(); i++) {
+            matches[i] = -1;
+            if (cases.get(i).getValue().isPresent()) {
+                visit(cases.get(i).getValue().get());
+                matches[i] = jump(Bytecode.CASE, -1);
+            }
+        }
+        // If no case matches the last one is run, whether or not it is DEFAULT
+        emit(Bytecode.POP, -1);
+        int otherwise = jump(Bytecode.JUMP, 0);
+        List<Integer> ends = new ArrayList<>();
+        for (int i = 0; i < cases.size(); i++) {
+            if (matches[i] != -1) {
+                patch(matches[i]);
+            }
+            if (i == cases.size() - 1) {
+                patch(otherwise);
+            }
+            visit(cases.get(i));
+            if (i < cases.size() - 1) {
+                ends.add(jump(Bytecode.JUMP, 0));
+            }
+        }
+        ends.forEach(this::patch);
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Statement.Case ast) {
+        ast.getStatements().forEach(this::visit);
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Statement.While ast) {
+        int condition = size;
+        visit(ast.getCondition());
+        int end = jump(Bytecode.JUMP_IF_FALSE, -1);
+        visitBlock(ast.getStatements());
+        emit(Bytecode.JUMP, 0, condition);
+        patch(end);
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Statement.Return ast) {
+        // A returned call is made in place of the function (see the machine)
+        if (ast.getValue() instanceof Ast.Expression.Function function) {
+            emit(Bytecode.FUNCTION, 1, constant(function.getName().intern()), function.getArguments().size(), callSites++);
+            function.getArguments().forEach(this::visit);
+            emit(Bytecode.TAIL_INVOKE, -function.getArguments().size() - 1, function.getArguments().size());
+            return null;
+        }
+        visit(ast.getValue());
+        emit(Bytecode.RETURN, -1);
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Expression.Literal ast) {
+        emit(Bytecode.CONST, 1, constant(ast.getLiteral() == null ? Bytecode.NIL : Bytecode.fromValue(Interpreter.literal(ast.getLiteral(), decimals))));
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Expression.Group ast) {
+        visit(ast.getExpression());
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Expression.Binary ast) {
+        switch (ast.getOperator()) {
+            case "&&":
+            case "||": {
+                visit(ast.getLeft());
+                int end = jump(ast.getOperator().equals("&&") ? Bytecode.AND : Bytecode.OR, -1);
+                visit(ast.getRight());
+                emit(Bytecode.BOOLEAN, 0);
+                patch(end);
+                return null;
+            }
+            case "==":
+            case "!=":
+                visit(ast.getLeft());
+                visit(ast.getRight());
+                emit(ast.getOperator().equals("==") ? Bytecode.EQUAL : Bytecode.NOT_EQUAL, -1);
+                return null;
+            case "+":
+                if (isPure(ast.getLeft()) && isPure(ast.getRight())) {
+                    visit(ast.getLeft());
+                    visit(ast.getRight());
+                    emit(Bytecode.ADD, -1);
+                } else {
+                    visitAdd(ast);
+                }
+                return null;
+            case "<":
+                visitBinary(ast, Bytecode.LESS);
+                return null;
+            case ">":
+                visitBinary(ast, Bytecode.GREATER);
+                return null;
+            case "-":
+                visitBinary(ast, Bytecode.SUBTRACT);
+                return null;
+            case "*":
+                visitBinary(ast, Bytecode.MULTIPLY);
+                return null;
+            case "/":
+                visitBinary(ast, Bytecode.DIVIDE);
+                return null;
+            case "^":
+                visitBinary(ast, Bytecode.POWER);
+                return null;
+            default:
+                visit(ast.getLeft());
+                emit(Bytecode.THROW, 0, constant(INVALID_CLASS));
+                return null;
+        }
+    }
+
+    /**
+     * Compiles an operation whose left operand is checked before the right
+     * operand is evaluated, unless it is a literal (so the operation can check
+     * it instead). For a division, an ArithmeticException from the right
+     * operand or the division itself is rethrown as a RuntimeException.
+     */
+    private void visitBinary(Ast.Expression.Binary ast, int op) {
+        visit(ast.getLeft());
+        if (!(ast.getRight() instanceof Ast.Expression.Literal)) {
+            emit(Bytecode.CHECK, 0, op);
+        }
+        int start = size;
+        visit(ast.getRight());
+        emit(op, -1);
+        if (op == Bytecode.DIVIDE) {
+            handler(start, Bytecode.ARITHMETIC);
+        }
+    }
+
+    /**
+     * Compiles an addition with an operand which may have side effects. When
+     * the left operand is not a number, the interpreter evaluates the operands
+     * of a concatenation again, so each operand is compiled once as a
+     * subroutine which is called each time it is evaluated:
+     *
+     * <pre>
+     *         JUMP start
+     * left:   {left} RET
+     * right:  {right} RET
+     * start:  JSR left; JUMP_IF_NUMBER number; JUMP_IF_STRING string
+     *         JSR right; JUMP_IF_STRING both; THROW (invalid class type)
+     * both:   POP
+     * string: POP; JSR left; JSR right; CONCAT; JUMP end
+     * number: JSR right; ADD
+     * end:
+     * </pre>
+     */
+    private void visitAdd(Ast.Expression.Binary ast) {
+        int base = stack;
+        int start = jump(Bytecode.JUMP, 0);
+        // Subroutines are called with at most one value on the stack, and
+        // JSR pushes the return address
+        stack = base + 2;
+        int left = size;
+        visit(ast.getLeft());
+        emit(Bytecode.RET, -1);
+        stack = base + 2;
+        int right = size;
+        visit(ast.getRight());
+        emit(Bytecode.RET, -1);
+
+        stack = base;
+        patch(start);
+        emit(Bytecode.JSR, 1, left);
+        int number = jump(Bytecode.JUMP_IF_NUMBER, 0);
+        int string = jump(Bytecode.JUMP_IF_STRING, 0);
+        emit(Bytecode.JSR, 1, right);
+        int both = jump(Bytecode.JUMP_IF_STRING, 0);
+        emit(Bytecode.THROW, 0, constant(INVALID_CLASS));
+
+        patch(both);
+        emit(Bytecode.POP, -1);
+        patch(string);
+        emit(Bytecode.POP, -1);
+        emit(Bytecode.JSR, 1, left);
+        emit(Bytecode.JSR, 1, right);
+        emit(Bytecode.CONCAT, -1);
+        int end = jump(Bytecode.JUMP, 0);
+
+        stack = base + 1;
+        patch(number);
+        emit(Bytecode.JSR, 1, right);
+        emit(Bytecode.ADD, -1);
+        patch(end);
+    }
+
+    @Override
+    public Void visit(Ast.Expression.Access ast) {
+        if (ast.getOffset().isPresent()) {
+            visit(ast.getOffset().get());
+            emitVariable(Bytecode.LOAD_INDEX, 0, ast.getName());
+        } else {
+            emitVariable(Bytecode.LOAD, 1, ast.getName());
+        }
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Expression.Function ast) {
+        // The function is looked up before its arguments are evaluated
+        emit(Bytecode.FUNCTION, 1, constant(ast.getName().intern()), ast.getArguments().size(), callSites++);
+        ast.getArguments().forEach(this::visit);
+        emit(Bytecode.INVOKE, -ast.getArguments().size(), ast.getArguments().size());
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Expression.PlcList ast) {
+        ast.getValues().forEach(this::visit);
+        emit(Bytecode.LIST, 1 - ast.getValues().size(), ast.getValues().size());
+        return null;
+    }
+
+    /**
+     * Compiles the statements of an {@code IF} or {@code WHILE} block in a new
+     * frame, if it declares any variables.
+     */
+    private void visitBlock(List<Ast.Statement> statements) {
+        Block block = new Block(Resolver.declares(statements));
+        blocks.add(block);
+        int names = -1;
+        if (block.framed) {
+            names = constants.size();
+            constants.add(null);
+            emit(Bytecode.ENTER, 0, names, framedBlocks++);
+        }
+        statements.forEach(this::visit);
+        if (block.framed) {
+            emit(Bytecode.EXIT, 0);
+            constants.set(names, block.names.toArray(new String[0]));
+        }
+        blocks.removeLast();
+    }
+
+    /**
+     * Emits an instruction with the (depth, slot, name) operands of a
+     * variable, searching the blocks as by the {@link Resolver}.
+     */
+    private void emitVariable(int op, int effect, String name) {
+        name = name.intern();
+        int depth = 0;
+        for (int i = blocks.size() - 1; i >= 0; i--) {
+            Integer slot = blocks.get(i).outer ? (Integer) blocks.get(i).declare(name) : blocks.get(i).slots.get(name);
+            if (slot != null) {
+                emit(op, effect, depth, slot, constant(name));
+                return;
+            }
+            if (blocks.get(i).framed) {
+                depth++;
+            }
+        }
+        emit(op, effect, -1, 0, constant(name));
+    }
+
+    private void emit(int op, int effect, int... operands) {
+        if (size + 1 + operands.length > code.length) {
+            code = Arrays.copyOf(code, 2 * code.length + operands.length);
+        }
+        code[size++] = op;
+        for (int operand : operands) {
+            code[size++] = operand;
+        }
+        stack += effect;
+        maxStack = Math.max(maxStack, stack);
+    }
+
+    /**
+     * Emits a jump with a target to be {@link #patch(int) patched}, returning
+     * the index of the target.
+     */
+    private int jump(int op, int effect) {
+        emit(op, effect, -1);
+        return size - 1;
+    }
+
+    /**
+     * Sets the target of a jump to the next instruction.
+     */
+    private void patch(int jump) {
+        code[jump] = size;
+    }
+
+    private void handler(int start, int kind) {
+        handlers.add(start);
+        handlers.add(size);
+        handlers.add(kind);
+    }
+
+    /**
+     * Returns the index of a constant, sharing indices between equal literals
+     * and names (which are interned, so names can be compared by identity).
+     */
+    private int constant(Object value) {
+        if (value instanceof String string) {
+            value = string.intern();
+        }
+        if (!(value instanceof Bytecode.Throw)) {
+            Integer index = constantIndices.get(value);
+            if (index != null) {
+                return index;
+            }
+            constantIndices.put(value, constants.size());
+        }
+        constants.add(value);
+        return constants.size() - 1;
+    }
+
+    /**
+     * Returns whether evaluating an expression cannot have side effects, and
+     * so always gives the same value (or exception) when evaluated again.
+     */
+    private static boolean isPure(Ast.Expression ast) {
+        if (ast instanceof Ast.Expression.Function) {
+            return false;
+        } else if (ast instanceof Ast.Expression.Group group) {
+            return isPure(group.getExpression());
+        } else if (ast instanceof Ast.Expression.Binary binary) {
+            return isPure(binary.getLeft()) && isPure(binary.getRight());
+        } else if (ast instanceof Ast.Expression.Access access) {
+            return access.getOffset().map(BytecodeCompiler::isPure).orElse(true);
+        } else if (ast instanceof Ast.Expression.PlcList list) {
+            return list.getValues().stream().allMatch(BytecodeCompiler::isPure);
+        }
+        return true;
+    }
+
+    /**
+     * Returns the exception the interpreter throws casting a receiver which is
+     * not an access.
+     */
+    private static Bytecode.Throw castException(Ast.Expression receiver) {
+        return () -> {
+            try {
+                Ast.Expression.Access access = (Ast.Expression.Access) receiver;
+                throw new AssertionError(access);
+            } catch (ClassCastException ex) {
+                return ex;
+            }
+        };
+    }
+
+    /**
+     * A function or block's frame, with the slots of the variables declared so
+     * far. A block which declares no variables is not framed.
+     */
+    private static final class Block {
+
+        private final boolean framed;
+
+        /**
+         * Whether the block is around a loop compiled on its own, and so has a
+         * slot for any variable not declared in the loop.
+         */
+        private boolean outer;
+        private final Map<String, Integer> slots = new HashMap<>();
+        private final List<String> names = new ArrayList<>();
+
+        private Block(boolean framed) {
+            this.framed = framed;
+        }
+
+        /**
+         * Returns the slot of the name, adding it if needed. A name declared
+         * again in the same frame keeps its slot.
+         */
+        private int declare(String name) {
+            Integer slot = slots.get(name);
+            if (slot == null) {
+                slot = names.size();
+                slots.put(name, slot);
+                names.add(name);
+            }
+            return slot;
+        }
+
+    }
+
+}
@@ -0,0 +1,382 @@
+package plc.project;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A minimal writer of JVM class files, as used by the {@link JvmGenerator}.
+ *
+ * Classes are written at version 49 (Java 5), the last version verified by
+ * type inference, so methods need no stack map frames. Only the constants,
+ * members and instructions the generator needs are supported.
+ */
+final class ClassFile {
+
+    static final int ACC_PUBLIC = 0x0001;
+    static final int ACC_FINAL = 0x0010;
+    static final int ACC_SUPER = 0x0020;
+
+    static final int ACONST_NULL = 1, ICONST_0 = 3, DCONST_0 = 14, BIPUSH = 16, SIPUSH = 17, LDC = 18, LDC_W = 19, LDC2_W = 20;
+    static final int ILOAD = 21, DLOAD = 24, ALOAD = 25, ISTORE = 54, DSTORE = 57, ASTORE = 58;
+    static final int IALOAD = 46, DALOAD = 49, AALOAD = 50, BALOAD = 51, CALOAD = 52;
+    static final int IASTORE = 79, DASTORE = 82, AASTORE = 83, BASTORE = 84, CASTORE = 85;
+    static final int POP = 87, POP2 = 88, DUP = 89, DUP_X1 = 90, SWAP = 95;
+    static final int IADD = 96, DADD = 99, ISUB = 100, DSUB = 103, IMUL = 104, DMUL = 107, IDIV = 108, DDIV = 111;
+    static final int I2D = 135, D2I = 142, DCMPL = 151, DCMPG = 152;
+    static final int IFEQ = 153, IFNE = 154, IFLT = 155, IFGE = 156, IFGT = 157, IFLE = 158;
+    static final int IF_ICMPEQ = 159, IF_ICMPNE = 160, IF_ICMPLT = 161, IF_ICMPGE = 162, IF_ICMPGT = 163, IF_ICMPLE = 164;
+    static final int IF_ACMPEQ = 165, IF_ACMPNE = 166, GOTO = 167;
+    static final int IRETURN = 172, DRETURN = 175, ARETURN = 176, RETURN = 177;
+    static final int GETSTATIC = 178, GETFIELD = 180, PUTFIELD = 181;
+    static final int INVOKEVIRTUAL = 182, INVOKESPECIAL = 183, INVOKESTATIC = 184, INVOKEINTERFACE = 185;
+    static final int NEW = 187, NEWARRAY = 188, ANEWARRAY = 189, ATHROW = 191, CHECKCAST = 192, WIDE = 196;
+
+    private final ByteArrayOutputStream pool = new ByteArrayOutputStream();
+    private final DataOutputStream poolOut = new DataOutputStream(pool);
+    private final Map<String, Integer> constants = new HashMap<>();
+    private int poolCount = 1;
+
+    private final int thisClass;
+    private final int superClass;
+    private final List<byte[]> fields = new ArrayList<>();
+    private final List<byte[]> methods = new ArrayList<>();
+
+    ClassFile(String name, String superName) {
+        this.thisClass = classConstant(name);
+        this.superClass = classConstant(superName);
+    }
+
+    void field(int access, String name, String descriptor) {
+        fields.add(bytes(out -> {
+            out.writeShort(access);
+            out.writeShort(utf8(name));
+            out.writeShort(utf8(descriptor));
+            out.writeShort(0);
+        }));
+    }
+
+    /**
+     * Returns the bytes of the class file.
+     */
+    byte[] toByteArray(int access) {
+        return bytes(out -> {
+            out.writeInt(0xCAFEBABE);
+            out.writeShort(0);
+            out.writeShort(49);
+            out.writeShort(poolCount);
+            out.write(pool.toByteArray());
+            out.writeShort(access);
+            out.writeShort(thisClass);
+            out.writeShort(superClass);
+            out.writeShort(0);
+            out.writeShort(fields.size());
+            for (byte[] field : fields) {
+                out.write(field);
+            }
+            out.writeShort(methods.size());
+            for (byte[] method : methods) {
+                out.write(method);
+            }
+            out.writeShort(0);
+        });
+    }
+
+    int utf8(String value) {
+        return constant("U" + value, 1, out -> {
+            out.writeByte(1);
+            out.writeUTF(value);
+        });
+    }
+
+    int classConstant(String name) {
+        int index = utf8(name);
+        return constant("C" + name, 1, out -> {
+            out.writeByte(7);
+            out.writeShort(index);
+        });
+    }
+
+    int stringConstant(String value) {
+        int index = utf8(value);
+        return constant("S" + value, 1, out -> {
+            out.writeByte(8);
+            out.writeShort(index);
+        });
+    }
+
+    int intConstant(int value) {
+        return constant("I" + value, 1, out -> {
+            out.writeByte(3);
+            out.writeInt(value);
+        });
+    }
+
+    int doubleConstant(double value) {
+        return constant("D" + Double.doubleToRawLongBits(value), 2, out -> {
+            out.writeByte(6);
+            out.writeDouble(value);
+        });
+    }
+
+    /**
+     * Returns a field or method reference, with tag 9 (Fieldref), 10
+     * (Methodref) or 11 (InterfaceMethodref).
+     */
+    int memberConstant(int tag, String owner, String name, String descriptor) {
+        int ownerIndex = classConstant(owner);
+        int nameIndex = utf8(name);
+        int descriptorIndex = utf8(descriptor);
+        int nameAndType = constant("N" + name + " " + descriptor, 1, out -> {
+            out.writeByte(12);
+            out.writeShort(nameIndex);
+            out.writeShort(descriptorIndex);
+        });
+        return constant(tag + owner + "." + name + " " + descriptor, 1, out -> {
+            out.writeByte(tag);
+            out.writeShort(ownerIndex);
+            out.writeShort(nameAndType);
+        });
+    }
+
+    private int constant(String key, int size, Writer writer) {
+        Integer index = constants.get(key);
+        if (index == null) {
+            write(poolOut, writer);
+            index = poolCount;
+            poolCount += size;
+            if (poolCount > 0xFFFF) {
+                throw new RuntimeException("Too many constants.");
+            }
+            constants.put(key, index);
+        }
+        return index;
+    }
+
+    private interface Writer {
+        void write(DataOutputStream out) throws IOException;
+    }
+
+    private static void write(DataOutputStream out, Writer writer) {
+        try {
+            writer.write(out);
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    private static byte[] bytes(Writer writer) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        write(new DataOutputStream(bytes), writer);
+        return bytes.toByteArray();
+    }
+
+    /**
+     * A forward or backward jump target within a {@link Code}.
+     */
+    static final class Label {
+
+        private int position = -1;
+        private final List<Integer> branches = new ArrayList<>();
+
+    }
+
+    /**
+     * The code of a method being written. The stack depth is tracked through
+     * the effect given with each instruction, in slots, to compute the
+     * method's max stack; after an unconditional jump the emitter resets it
+     * with {@link #setStack(int)}.
+     */
+    final class Code {
+
+        private final int access;
+        private final String name;
+        private final String descriptor;
+        private byte[] code = new byte[64];
+        private int length = 0;
+        private int stack = 0;
+        private int maxStack = 0;
+        private int maxLocals;
+
+        Code(int access, String name, String descriptor, int locals) {
+            this.access = access;
+            this.name = name;
+            this.descriptor = descriptor;
+            this.maxLocals = locals;
+        }
+
+        /**
+         * Allocates a local variable of the given size (2 for a long or
+         * double, otherwise 1), returning its index.
+         */
+        int allocate(int size) {
+            int local = maxLocals;
+            maxLocals += size;
+            if (maxLocals > 0xFFFF) {
+                throw new RuntimeException("Too many local variables in " + name + ".");
+            }
+            return local;
+        }
+
+        int getStack() {
+            return stack;
+        }
+
+        void setStack(int stack) {
+            this.stack = stack;
+        }
+
+        void op(int opcode, int effect) {
+            u1(opcode);
+            effect(effect);
+        }
+
+        void op(int opcode, int operand, int effect) {
+            u1(opcode);
+            u1(operand);
+            effect(effect);
+        }
+
+        void op2(int opcode, int operand, int effect) {
+            u1(opcode);
+            u2(operand);
+            effect(effect);
+        }
+
+        void local(int opcode, int local, int effect) {
+            if (local > 0xFF) {
+                u1(WIDE);
+                op2(opcode, local, effect);
+            } else {
+                op(opcode, local, effect);
+            }
+        }
+
+        void pushInt(int value) {
+            if (value >= -1 && value <= 5) {
+                op(ICONST_0 + value, 1);
+            } else if (value == (byte) value) {
+                op(BIPUSH, value & 0xFF, 1);
+            } else if (value == (short) value) {
+                op2(SIPUSH, value & 0xFFFF, 1);
+            } else {
+                ldc(intConstant(value));
+            }
+        }
+
+        void ldc(int index) {
+            if (index > 0xFF) {
+                op2(LDC_W, index, 1);
+            } else {
+                op(LDC, index, 1);
+            }
+        }
+
+        void invoke(int opcode, String owner, String name, String descriptor, int effect) {
+            if (opcode == INVOKEINTERFACE) {
+                op2(opcode, memberConstant(11, owner, name, descriptor), 0);
+                u1(argumentSize(descriptor) + 1);
+                u1(0);
+            } else {
+                op2(opcode, memberConstant(10, owner, name, descriptor), 0);
+            }
+            effect(effect);
+        }
+
+        void jump(int opcode, Label label, int effect) {
+            int position = length;
+            u1(opcode);
+            effect(effect);
+            if (label.position >= 0) {
+                u2(offset(label.position - position));
+            } else {
+                label.branches.add(position);
+                u2(0);
+            }
+        }
+
+        void mark(Label label) {
+            label.position = length;
+            for (int branch : label.branches) {
+                int offset = offset(length - branch);
+                code[branch + 1] = (byte) (offset >> 8);
+                code[branch + 2] = (byte) offset;
+            }
+            label.branches.clear();
+        }
+
+        /**
+         * Adds the method to the class.
+         */
+        void end() {
+            if (length > 0xFFFF) {
+                throw new RuntimeException("Method " + name + " is too large.");
+            }
+            methods.add(bytes(out -> {
+                out.writeShort(access);
+                out.writeShort(utf8(name));
+                out.writeShort(utf8(descriptor));
+                out.writeShort(1);
+                out.writeShort(utf8("Code"));
+                out.writeInt(12 + length);
+                out.writeShort(maxStack);
+                out.writeShort(maxLocals);
+                out.writeInt(length);
+                out.write(code, 0, length);
+                out.writeShort(0);
+                out.writeShort(0);
+            }));
+        }
+
+        private int offset(int offset) {
+            if (offset != (short) offset) {
+                throw new RuntimeException("Method " + name + " is too large.");
+            }
+            return offset & 0xFFFF;
+        }
+
+        private void effect(int effect) {
+            stack += effect;
+            maxStack = Math.max(maxStack, stack);
+        }
+
+        private void u1(int value) {
+            if (length == code.length) {
+                code = Arrays.copyOf(code, length * 2);
+            }
+            code[length++] = (byte) value;
+        }
+
+        private void u2(int value) {
+            u1(value >> 8);
+            u1(value);
+        }
+
+    }
+
+    /**
+     * Returns the size in slots of the arguments of a method descriptor.
+     */
+    static int argumentSize(String descriptor) {
+        int size = 0;
+        for (int i = 1; descriptor.charAt(i) != ')'; i++) {
+            char c = descriptor.charAt(i);
+            boolean array = c == '[';
+            while (c == '[') {
+                c = descriptor.charAt(++i);
+            }
+            if (c == 'L') {
+                i = descriptor.indexOf(';', i);
+            }
+            size += !array && (c == 'J' || c == 'D') ? 2 : 1;
+        }
+        return size;
+    }
+
+}
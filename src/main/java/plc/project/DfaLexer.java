@@ -0,0 +1,246 @@
+package plc.project;
+
+import java.util.Arrays;
+
+/**
+ * Table-driven implementation of {@link Lexer#lexToken()}. Every character is
+ * first mapped to a character class through a precomputed table, and tokens
+ * are then recognized by a DFA over those classes using longest match (the
+ * last accepting state reached wins).
+ *
+ * The states mirror the behavior of the regex based lexer exactly, including
+ * the token boundaries for cases like {@code -0} or {@code 1.} and the index
+ * of every {@link ParseException}. Non-accepting states carry the error that
+ * the regex lexer would report if the token can not be completed from there.
+ */
+final class DfaLexer {
+
+    // Character classes
+    private static final int OTHER = 0;
+    private static final int LETTER = 1;
+    private static final int ESCAPE_LETTER = 2; // b, n, r, t
+    private static final int ZERO = 3;
+    private static final int NONZERO = 4;
+    private static final int AT = 5;
+    private static final int MINUS = 6;
+    private static final int UNDERSCORE = 7;
+    private static final int DOT = 8;
+    private static final int QUOTE = 9;
+    private static final int DOUBLE_QUOTE = 10;
+    private static final int BACKSLASH = 11;
+    private static final int NEWLINE = 12; // \n, \r
+    private static final int TERMINATOR = 13; // other line terminators, never matched by '.'
+    private static final int BANG = 14;
+    private static final int EQUALS = 15;
+    private static final int AMPERSAND = 16;
+    private static final int PIPE = 17;
+    private static final int CLASSES = 18;
+
+    private static final byte[] ASCII_CLASSES = new byte[128];
+
+    // States
+    private static final int START = 0;
+    private static final int IDENTIFIER = 1;
+    private static final int MINUS_SIGN = 2;
+    private static final int NEGATIVE_ZERO = 3;
+    private static final int NEGATIVE_ZERO_DOT = 4;
+    private static final int INTEGER_ZERO = 5;
+    private static final int INTEGER = 6;
+    private static final int INTEGER_DOT = 7;
+    private static final int DECIMAL = 8;
+    private static final int OPERATOR_BANG = 9;
+    private static final int OPERATOR_EQUALS = 10;
+    private static final int OPERATOR_AMPERSAND = 11;
+    private static final int OPERATOR_PIPE = 12;
+    private static final int OPERATOR = 13;
+    private static final int CHAR_OPEN = 14;
+    private static final int CHAR_VALUE = 15;
+    private static final int CHAR_EMPTY = 16;
+    private static final int CHAR_NEWLINE = 17;
+    private static final int CHAR_INVALID_ESCAPE = 18;
+    private static final int CHAR_BACKSLASH = 19;
+    private static final int CHAR_ESCAPE = 20;
+    private static final int CHAR_ESCAPE_QUOTE = 21;
+    private static final int CHAR_CLOSED = 22;
+    private static final int STRING_OPEN = 23;
+    private static final int STRING_ESCAPE = 24;
+    private static final int STRING_CLOSED = 25;
+    private static final int STATES = 26;
+
+    private static final int DEAD = -1;
+    private static final int CURRENT = -1;
+
+    private static final int[] TRANSITIONS = new int[STATES * CLASSES];
+    private static final Token.Type[] ACCEPTING = new Token.Type[STATES];
+    private static final String[] ERROR_MESSAGES = new String[STATES];
+    private static final int[] ERROR_OFFSETS = new int[STATES];
+
+    private DfaLexer() {}
+
+    /**
+     * Lexes the next token from the char stream, which must not be positioned
+     * on whitespace skipped by {@link Lexer#lex()}.
+     */
+    static Token lexToken(Lexer.CharStream chars) {
+        return chars.emit(scan(chars));
+    }
+
+    /**
+     * Advances the char stream over the next token and returns its type
+     * without emitting it, leaving the token's range as the current match.
+     */
+    static Token.Type scan(Lexer.CharStream chars) {
+        int state = START;
+        int offset = 0;
+        int acceptedLength = 0;
+        Token.Type acceptedType = null;
+
+        while (chars.has(offset)) {
+            int next = TRANSITIONS[state * CLASSES + classOf(chars.get(offset))];
+            if (next == DEAD) {
+                break;
+            }
+            state = next;
+            offset++;
+            if (ACCEPTING[state] != null) {
+                acceptedType = ACCEPTING[state];
+                acceptedLength = offset;
+            }
+        }
+
+        if (acceptedType == null) {
+            int index = ERROR_OFFSETS[state] == CURRENT ? offset : ERROR_OFFSETS[state];
+            throw new ParseException(ERROR_MESSAGES[state], chars.getIndex() + index);
+        }
+        for (int i = 0; i < acceptedLength; i++) {
+            chars.advance();
+        }
+        return acceptedType;
+    }
+
+    static int classOf(char c) {
+        if (c < 128) {
+            return ASCII_CLASSES[c];
+        }
+        return c == '\u0085' || c == '\u2028' || c == '\u2029' ? TERMINATOR : OTHER;
+    }
+
+    private static void transition(int from, int to, int... classes) {
+        for (int c : classes) {
+            TRANSITIONS[from * CLASSES + c] = to;
+        }
+    }
+
+    private static void transitionAll(int from, int to) {
+        for (int c = 0; c < CLASSES; c++) {
+            TRANSITIONS[from * CLASSES + c] = to;
+        }
+    }
+
+    private static void error(int state, String message, int offset) {
+        ERROR_MESSAGES[state] = message;
+        ERROR_OFFSETS[state] = offset;
+    }
+
+    static {
+        for (char c = 'a'; c <= 'z'; c++) ASCII_CLASSES[c] = LETTER;
+        for (char c = 'A'; c <= 'Z'; c++) ASCII_CLASSES[c] = LETTER;
+        for (char c = '1'; c <= '9'; c++) ASCII_CLASSES[c] = NONZERO;
+        ASCII_CLASSES['b'] = ESCAPE_LETTER;
+        ASCII_CLASSES['n'] = ESCAPE_LETTER;
+        ASCII_CLASSES['r'] = ESCAPE_LETTER;
+        ASCII_CLASSES['t'] = ESCAPE_LETTER;
+        ASCII_CLASSES['0'] = ZERO;
+        ASCII_CLASSES['@'] = AT;
+        ASCII_CLASSES['-'] = MINUS;
+        ASCII_CLASSES['_'] = UNDERSCORE;
+        ASCII_CLASSES['.'] = DOT;
+        ASCII_CLASSES['\''] = QUOTE;
+        ASCII_CLASSES['"'] = DOUBLE_QUOTE;
+        ASCII_CLASSES['\\'] = BACKSLASH;
+        ASCII_CLASSES['\n'] = NEWLINE;
+        ASCII_CLASSES['\r'] = NEWLINE;
+        ASCII_CLASSES['!'] = BANG;
+        ASCII_CLASSES['='] = EQUALS;
+        ASCII_CLASSES['&'] = AMPERSAND;
+        ASCII_CLASSES['|'] = PIPE;
+
+        Arrays.fill(TRANSITIONS, DEAD);
+        Arrays.fill(ERROR_OFFSETS, CURRENT);
+        error(START, "Could not match token", 0);
+
+        // Identifiers
+        transition(START, IDENTIFIER, LETTER, ESCAPE_LETTER, AT);
+        transition(IDENTIFIER, IDENTIFIER, LETTER, ESCAPE_LETTER, ZERO, NONZERO, UNDERSCORE, MINUS);
+        ACCEPTING[IDENTIFIER] = Token.Type.IDENTIFIER;
+
+        // Integers and decimals, a lone '-' is an operator
+        transition(START, MINUS_SIGN, MINUS);
+        transition(START, INTEGER_ZERO, ZERO);
+        transition(START, INTEGER, NONZERO);
+        transition(MINUS_SIGN, NEGATIVE_ZERO, ZERO);
+        transition(MINUS_SIGN, INTEGER, NONZERO);
+        transition(NEGATIVE_ZERO, NEGATIVE_ZERO_DOT, DOT);
+        transition(NEGATIVE_ZERO_DOT, DECIMAL, ZERO, NONZERO);
+        transition(INTEGER_ZERO, INTEGER_DOT, DOT);
+        transition(INTEGER, INTEGER, ZERO, NONZERO);
+        transition(INTEGER, INTEGER_DOT, DOT);
+        transition(INTEGER_DOT, DECIMAL, ZERO, NONZERO);
+        transition(DECIMAL, DECIMAL, ZERO, NONZERO);
+        ACCEPTING[MINUS_SIGN] = Token.Type.OPERATOR;
+        ACCEPTING[INTEGER_ZERO] = Token.Type.INTEGER;
+        ACCEPTING[INTEGER] = Token.Type.INTEGER;
+        ACCEPTING[DECIMAL] = Token.Type.DECIMAL;
+
+        // Operators, any single character other than a line terminator
+        transition(START, OPERATOR_BANG, BANG);
+        transition(START, OPERATOR_EQUALS, EQUALS);
+        transition(START, OPERATOR_AMPERSAND, AMPERSAND);
+        transition(START, OPERATOR_PIPE, PIPE);
+        transition(START, OPERATOR, OTHER, UNDERSCORE, DOT, BACKSLASH);
+        transition(OPERATOR_BANG, OPERATOR, EQUALS);
+        transition(OPERATOR_EQUALS, OPERATOR, EQUALS);
+        transition(OPERATOR_AMPERSAND, OPERATOR, AMPERSAND);
+        transition(OPERATOR_PIPE, OPERATOR, PIPE);
+        ACCEPTING[OPERATOR_BANG] = Token.Type.OPERATOR;
+        ACCEPTING[OPERATOR_EQUALS] = Token.Type.OPERATOR;
+        ACCEPTING[OPERATOR_AMPERSAND] = Token.Type.OPERATOR;
+        ACCEPTING[OPERATOR_PIPE] = Token.Type.OPERATOR;
+        ACCEPTING[OPERATOR] = Token.Type.OPERATOR;
+
+        // Characters
+        transition(START, CHAR_OPEN, QUOTE);
+        transitionAll(CHAR_OPEN, CHAR_VALUE);
+        transition(CHAR_OPEN, CHAR_EMPTY, QUOTE);
+        transition(CHAR_OPEN, CHAR_NEWLINE, NEWLINE);
+        transition(CHAR_OPEN, CHAR_BACKSLASH, BACKSLASH);
+        transition(CHAR_VALUE, CHAR_CLOSED, QUOTE);
+        transition(CHAR_EMPTY, CHAR_INVALID_ESCAPE, QUOTE);
+        transition(CHAR_NEWLINE, CHAR_INVALID_ESCAPE, QUOTE);
+        transition(CHAR_BACKSLASH, CHAR_ESCAPE_QUOTE, QUOTE);
+        transition(CHAR_BACKSLASH, CHAR_ESCAPE, ESCAPE_LETTER, DOUBLE_QUOTE, BACKSLASH);
+        transition(CHAR_ESCAPE, CHAR_CLOSED, QUOTE);
+        transition(CHAR_ESCAPE_QUOTE, CHAR_CLOSED, QUOTE);
+        ACCEPTING[CHAR_CLOSED] = Token.Type.CHARACTER;
+        error(CHAR_OPEN, "Invalid character", 2);
+        error(CHAR_VALUE, "Invalid character", 2);
+        error(CHAR_EMPTY, "Invalid character", 1);
+        error(CHAR_NEWLINE, "Invalid character", 2);
+        error(CHAR_INVALID_ESCAPE, "Invalid escape sequence", 1);
+        error(CHAR_BACKSLASH, "Invalid character", 2);
+        error(CHAR_ESCAPE, "Invalid character", 2);
+        error(CHAR_ESCAPE_QUOTE, "Invalid escape sequence", 1);
+
+        // Strings
+        transition(START, STRING_OPEN, DOUBLE_QUOTE);
+        transitionAll(STRING_OPEN, STRING_OPEN);
+        transition(STRING_OPEN, DEAD, NEWLINE, TERMINATOR);
+        transition(STRING_OPEN, STRING_ESCAPE, BACKSLASH);
+        transition(STRING_OPEN, STRING_CLOSED, DOUBLE_QUOTE);
+        transition(STRING_ESCAPE, STRING_OPEN, ESCAPE_LETTER, QUOTE, DOUBLE_QUOTE, BACKSLASH);
+        ACCEPTING[STRING_CLOSED] = Token.Type.STRING;
+        error(STRING_OPEN, "Invalid string", CURRENT);
+        error(STRING_ESCAPE, "Invalid escape character", CURRENT);
+    }
+
+}
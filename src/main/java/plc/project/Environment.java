@@ -1,5 +1,6 @@
 package plc.project;
 
+import java.math.BigInteger;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
@@ -8,8 +9,37 @@ import java.util.Map;
 
 public final class Environment {
 
+    /**
+     * Returns an object holding a value, of an unknown type. Objects are
+     * immutable, so the objects of nil, booleans, small integers, ASCII
+     * characters and recently created strings are shared rather than
+     * allocated; any other object is a single allocation.
+     */
     public static PlcObject create(Object value) {
-        return new PlcObject(new Scope(null), value);
+        if (value instanceof Boolean) {
+            return (Boolean) value ? TRUE : FALSE;
+        } else if (value instanceof BigInteger integer) {
+            if (integer.bitLength() < 16) {
+                int index = integer.intValue() - SMALL_INTEGER_MIN;
+                if (index >= 0 && index < INTEGERS.length) {
+                    return INTEGERS[index];
+                }
+            }
+        } else if (value instanceof Character character) {
+            if (character < CHARACTERS.length) {
+                return CHARACTERS[character];
+            }
+        } else if (value instanceof String string) {
+            int index = string.hashCode() & (STRINGS.length - 1);
+            PlcObject cached = STRINGS[index];
+            if (cached != null && string.equals(cached.value)) {
+                return cached;
+            }
+            return STRINGS[index] = new PlcObject(Type.UNKNOWN, Type.UNKNOWN.scope, value);
+        } else if (value == NIL.value) {
+            return NIL;
+        }
+        return new PlcObject(Type.UNKNOWN, Type.UNKNOWN.scope, value);
     }
 
     public static final PlcObject NIL = new PlcObject(Type.NIL, new Scope(null), new Object() {
@@ -21,6 +51,28 @@ public final class Environment {
 
     });
 
+    private static final PlcObject TRUE = new PlcObject(Type.UNKNOWN, Type.UNKNOWN.scope, Boolean.TRUE);
+    private static final PlcObject FALSE = new PlcObject(Type.UNKNOWN, Type.UNKNOWN.scope, Boolean.FALSE);
+
+    private static final int SMALL_INTEGER_MIN = -128;
+    private static final PlcObject[] INTEGERS = new PlcObject[1152];
+    private static final PlcObject[] CHARACTERS = new PlcObject[128];
+
+    /**
+     * A direct mapped cache of string objects by hash code, in which each new
+     * string replaces the object of its entry.
+     */
+    private static final PlcObject[] STRINGS = new PlcObject[256];
+
+    static {
+        for (int i = 0; i < INTEGERS.length; i++) {
+            INTEGERS[i] = new PlcObject(Type.UNKNOWN, Type.UNKNOWN.scope, BigInteger.valueOf(i + SMALL_INTEGER_MIN));
+        }
+        for (char c = 0; c < CHARACTERS.length; c++) {
+            CHARACTERS[c] = new PlcObject(Type.UNKNOWN, Type.UNKNOWN.scope, c);
+        }
+    }
+
     private static final Map<String, Type> TYPES = new HashMap<>();
 
     public static Type getType(String name) {
@@ -48,6 +100,12 @@ public final class Environment {
         public static final Type CHARACTER = new Type("Character", "char", new Scope(COMPARABLE.scope));
         public static final Type STRING = new Type("String", "String", new Scope(COMPARABLE.scope));
 
+        /**
+         * The type of objects {@link Environment#create created} by the
+         * interpreter, which is not registered.
+         */
+        static final Type UNKNOWN = new Type("Unknown", "Unknown", new Scope(null));
+
         private final String name;
         private final String jvmName;
         private final Scope scope;
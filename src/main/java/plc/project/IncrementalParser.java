@@ -0,0 +1,309 @@
+package plc.project;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * Keeps the tokens and AST of a source up to date as it is edited, lexing and
+ * parsing only the globals and functions an edit touches.
+ *
+ * The tokens are held per top-level global or function ("item"), with
+ * indices relative to the start of the item, so moving the items after an
+ * edit only shifts their start. An edit re-lexes the characters from the
+ * first to the last item it could affect (including the two characters the
+ * lexer may look past the end of a token) and parses that region back into
+ * items. All other items, including their {@link Ast} nodes, are reused.
+ *
+ * Whenever the result could differ from lexing and parsing the whole input,
+ * such as for a lexing or parse error in the region or a global following a
+ * function, the whole input is lexed and parsed instead so that errors are
+ * exactly those of {@link Parser#parseSource()}.
+ */
+public final class IncrementalParser {
+
+    private String input;
+    private Ast.Source source;
+    private List<Item> items = null;
+    private int[] firstTokens;
+    private List<Token> tokens;
+
+    /**
+     * Starts from a previous result, being the input, the tokens lexed from it
+     * and the source parsed from those tokens.
+     */
+    public IncrementalParser(String input, List<Token> tokens, Ast.Source source) {
+        this.input = input;
+        this.source = source;
+        this.tokens = tokens;
+        split();
+    }
+
+    public String getInput() {
+        return input;
+    }
+
+    /**
+     * Returns the tokens of the last successful parse.
+     */
+    public List<Token> getTokens() {
+        return items != null ? new Tokens(0, 0, List.of(), 0) : tokens;
+    }
+
+    /**
+     * Returns the source of the last successful parse.
+     */
+    public Ast.Source getSource() {
+        return source;
+    }
+
+    /**
+     * Replaces {@code removed} characters at {@code offset} with the inserted
+     * text and returns the updated source. If the updated input fails to lex or
+     * parse the exception is thrown, and the next edit parses the whole input.
+     */
+    public Ast.Source edit(int offset, int removed, String inserted) throws ParseException {
+        if (offset < 0 || removed < 0 || offset + removed > input.length()) {
+            throw new IndexOutOfBoundsException("Edit [" + offset + ", " + (offset + removed) + ") out of bounds for length " + input.length());
+        }
+        input = input.substring(0, offset) + inserted + input.substring(offset + removed);
+        if (items != null) {
+            try {
+                if (reparse(offset, removed, inserted.length() - removed)) {
+                    return source;
+                }
+            } catch (ParseException ex) {
+                // Reported with its exact index by the full parse below
+            }
+        }
+        items = null;
+        tokens = new Lexer(input, Lexer.Engine.TABLE).lex();
+        source = new Parser(tokens).parseSource();
+        split();
+        return source;
+    }
+
+    /**
+     * Re-lexes and parses the items an edit could affect, returning false if
+     * the result may differ from parsing the whole input.
+     */
+    private boolean reparse(int offset, int removed, int delta) {
+        // Items from first to last (inclusive) are damaged, which is none if
+        // last == first - 1
+        int first = 0;
+        while (first < items.size() && items.get(first).end() + 2 < offset) {
+            first++;
+        }
+        int last = first - 1;
+        while (last + 1 < items.size() && items.get(last + 1).start <= offset + removed) {
+            last++;
+        }
+
+        int regionStart = first <= last ? Math.min(offset, items.get(first).start) : offset;
+        int regionEnd = Math.max(offset + removed, first <= last ? items.get(last).end() : 0);
+        // The region must end on whitespace so that no token crosses it
+        while (regionEnd + delta < input.length() && !isWhitespace(input.charAt(regionEnd + delta))) {
+            if (last + 1 == items.size()) {
+                return false;
+            }
+            last++;
+            regionEnd = items.get(last).end();
+        }
+
+        List<Token> region = new ArrayList<>();
+        Lexer lexer = new Lexer(input, regionStart, regionEnd + delta, Lexer.Engine.TABLE);
+        while (lexer.hasNext()) {
+            region.add(lexer.lexToken());
+        }
+
+        Tokens edited = new Tokens(firstTokens[first], firstTokens[last + 1], region, delta);
+        List<Item> parsed = parseItems(edited, firstTokens[first], firstTokens[first] + region.size());
+        if (parsed == null) {
+            return false;
+        }
+
+        // Globals must still come before functions
+        boolean function = first > 0 && items.get(first - 1).ast instanceof Ast.Function;
+        for (Item item : parsed) {
+            if (function && item.ast instanceof Ast.Global) {
+                return false;
+            }
+            function = item.ast instanceof Ast.Function;
+        }
+        if (function && last + 1 < items.size() && items.get(last + 1).ast instanceof Ast.Global) {
+            return false;
+        }
+
+        List<Item> updated = new ArrayList<>(items.size() - (last + 1 - first) + parsed.size());
+        updated.addAll(items.subList(0, first));
+        updated.addAll(parsed);
+        for (Item item : items.subList(last + 1, items.size())) {
+            item.start += delta;
+            updated.add(item);
+        }
+        items = updated;
+        index();
+        return true;
+    }
+
+    /**
+     * Splits the tokens into items by parsing them, reusing the nodes of the
+     * source. If the tokens are not exactly the source's globals followed by
+     * its functions, every edit parses the whole input.
+     */
+    private void split() {
+        items = null;
+        List<Item> parsed;
+        try {
+            parsed = parseItems(tokens, 0, tokens.size());
+        } catch (ParseException ex) {
+            return;
+        }
+        List<Ast.Global> globals = source.getGlobals();
+        List<Ast.Function> functions = source.getFunctions();
+        if (parsed == null || parsed.size() != globals.size() + functions.size()) {
+            return;
+        }
+        for (int i = 0; i < parsed.size(); i++) {
+            Item item = parsed.get(i);
+            if ((item.ast instanceof Ast.Global) != (i < globals.size())) {
+                return;
+            }
+            item.ast = i < globals.size() ? globals.get(i) : functions.get(i - globals.size());
+        }
+        items = parsed;
+        index();
+    }
+
+    private void index() {
+        firstTokens = new int[items.size() + 1];
+        for (int i = 0; i < items.size(); i++) {
+            firstTokens[i + 1] = firstTokens[i] + items.get(i).tokens.length;
+        }
+        List<Ast.Global> globals = new ArrayList<>();
+        List<Ast.Function> functions = new ArrayList<>();
+        for (Item item : items) {
+            if (item.ast instanceof Ast.Global) {
+                globals.add((Ast.Global) item.ast);
+            } else {
+                functions.add((Ast.Function) item.ast);
+            }
+        }
+        source = new Ast.Source(globals, functions);
+    }
+
+    /**
+     * Parses the globals and functions in tokens {@code [from, to)}, returning
+     * null unless they end exactly at {@code to}.
+     */
+    private static List<Item> parseItems(List<Token> tokens, int from, int to) throws ParseException {
+        Parser parser = new Parser(tokens, from);
+        List<Item> parsed = new ArrayList<>();
+        while (parser.getIndex() < to) {
+            int start = parser.getIndex();
+            String literal = tokens.get(start).getLiteral();
+            Ast ast;
+            if (literal.equals("LIST") || literal.equals("VAR") || literal.equals("VAL")) {
+                ast = parser.parseGlobal();
+            } else if (literal.equals("FUN")) {
+                ast = parser.parseFunction();
+            } else {
+                return null;
+            }
+            if (parser.getIndex() > to) {
+                return null;
+            }
+            parsed.add(new Item(ast, tokens.subList(start, parser.getIndex())));
+        }
+        return parsed;
+    }
+
+    private static boolean isWhitespace(char c) {
+        return c == ' ' || c == '\b' || c == '\n' || c == '\r' || c == '\t';
+    }
+
+    /**
+     * A top-level global or function and its tokens, which are indexed
+     * relative to the start of its first token.
+     */
+    private static final class Item {
+
+        private Ast ast;
+        private final Token[] tokens;
+        private int start;
+
+        private Item(Ast ast, List<Token> tokens) {
+            this.ast = ast;
+            this.start = tokens.get(0).getIndex();
+            this.tokens = new Token[tokens.size()];
+            for (int i = 0; i < this.tokens.length; i++) {
+                Token token = tokens.get(i);
+                this.tokens[i] = new Token(token.getType(), token.getLiteral(), token.getIndex() - start);
+            }
+        }
+
+        /**
+         * Returns the index after the last character of the item.
+         */
+        private int end() {
+            Token last = tokens[tokens.length - 1];
+            return start + last.getIndex() + last.getLiteral().length();
+        }
+
+    }
+
+    /**
+     * The tokens of the items, with the tokens {@code [from, to)} replaced by
+     * the (absolutely indexed) region and the tokens after it shifted by delta.
+     */
+    private final class Tokens extends AbstractList<Token> implements RandomAccess {
+
+        private final int from;
+        private final int to;
+        private final List<Token> region;
+        private final int delta;
+
+        private Tokens(int from, int to, List<Token> region, int delta) {
+            this.from = from;
+            this.to = to;
+            this.region = region;
+            this.delta = delta;
+        }
+
+        @Override
+        public Token get(int index) {
+            if (index < 0 || index >= size()) {
+                throw new IndexOutOfBoundsException("Index " + index + " out of bounds for length " + size());
+            } else if (index < from) {
+                return get(index, 0);
+            } else if (index < from + region.size()) {
+                return region.get(index - from);
+            }
+            return get(index - from - region.size() + to, delta);
+        }
+
+        private Token get(int index, int shift) {
+            int low = 0;
+            int high = items.size() - 1;
+            while (low < high) {
+                int mid = (low + high + 1) >>> 1;
+                if (firstTokens[mid] <= index) {
+                    low = mid;
+                } else {
+                    high = mid - 1;
+                }
+            }
+            Item item = items.get(low);
+            Token token = item.tokens[index - firstTokens[low]];
+            return new Token(token.getType(), token.getLiteral(), item.start + token.getIndex() + shift);
+        }
+
+        @Override
+        public int size() {
+            return firstTokens[items.size()] - (to - from) + region.size();
+        }
+
+    }
+
+}
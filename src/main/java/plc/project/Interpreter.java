@@ -8,11 +8,141 @@ import java.util.stream.Collectors;
 
 public class Interpreter implements Ast.Visitor<Environment.PlcObject> {
 
+    /**
+     * The implementation used by {@link #visit(Ast.Source)}. All engines give
+     * the same values, output and exceptions.
+     *
+     *  - {@link #TREE}, visiting the AST
+     *  - {@link #BYTECODE}, compiling each function to {@link Bytecode} run by
+     *    a {@link VirtualMachine}
+     *  - {@link #TIERED}, visiting each function until it is hot (its
+     *    invocations and loop iterations reach {@link #COMPILE_THRESHOLD}),
+     *    after which it is invoked as bytecode
+     */
+    public enum Engine {
+        TREE,
+        BYTECODE,
+        TIERED
+    }
+
+    /**
+     * The representation of Decimal values.
+     *
+     *  - {@link #BIG_DECIMAL}, exact values, with division rounded to the
+     *    dividend's scale
+     *  - {@link #DOUBLE}, primitive doubles with the semantics of generated
+     *    code (see {@link Generator}), so division by zero gives an infinity
+     *    or NaN, and NaN is unequal (and unordered) to every value
+     */
+    public enum DecimalMode {
+        BIG_DECIMAL,
+        DOUBLE
+    }
+
+    /**
+     * The number of invocations and loop iterations after which a function is
+     * compiled by the {@link Engine#TIERED} engine. The function is compiled
+     * for its next invocation, and a loop running in it is compiled on its
+     * own and finished as bytecode.
+     */
+    public static final int COMPILE_THRESHOLD = 1000;
+
     private Scope scope = new Scope(null);
 
+    private final Engine engine;
+
+    private final DecimalMode decimals;
+
+    private VirtualMachine machine;
+
+    /**
+     * The invocations and loop iterations of the function being visited, for
+     * the {@link Engine#TIERED} engine.
+     */
+    private int[] counter;
+
     private int argIndex;
 
+    /**
+     * The value of the {@code RETURN} being completed, which the statements
+     * enclosing it stop at until the function's invocation takes it, or null
+     * if there is none.
+     */
+    private Environment.PlcObject returned;
+
+    /**
+     * The scope of the statements of the function being visited, or null if
+     * there is none.
+     */
+    private Scope frame;
+
+    /**
+     * The call returned by the function being visited, which is made once it
+     * has returned, or null if there is none.
+     */
+    private TailCall tailCall;
+
+    /**
+     * The function each call last looked up, valid while the number of
+     * function definitions is {@link #callSiteDefinitions}.
+     */
+    private final Map<Ast.Expression.Function, Environment.Function> callSites = new IdentityHashMap<>();
+
+    private int callSiteDefinitions = 0;
+
+    /**
+     * The scope each IF branch with declarations last ran in, which is reused
+     * while the branch runs in the same scope again (as in a loop or on each
+     * call of a function).
+     */
+    private final Map<List<Ast.Statement>, Scope> blocks = new IdentityHashMap<>();
+
+    /**
+     * The functions defined by {@link #visit(Ast.Function)}.
+     */
+    private final Map<Environment.Function, SourceFunction> sources = new IdentityHashMap<>();
+
+    /**
+     * The results of pure functions by their arguments, least recently used
+     * first, or null if they aren't memoized.
+     */
+    private final Map<MemoKey, Environment.PlcObject> memo;
+
+    private long memoHits;
+
+    private long memoMisses;
+
     public Interpreter(Scope parent) {
+        this(parent, Engine.TREE);
+    }
+
+    public Interpreter(Scope parent, Engine engine) {
+        this(parent, engine, DecimalMode.BIG_DECIMAL);
+    }
+
+    public Interpreter(Scope parent, Engine engine, DecimalMode decimals) {
+        this(parent, engine, decimals, 0);
+    }
+
+    /**
+     * Creates an interpreter which memoizes the results of pure functions (see
+     * {@link PurityAnalyzer}) for up to {@code memoSize} distinct arguments,
+     * evicting the least recently used, or none if it is 0. Memoization is
+     * only done by the {@link Engine#TREE} and {@link Engine#TIERED} engines,
+     * and never of invocations by bytecode.
+     */
+    public Interpreter(Scope parent, Engine engine, DecimalMode decimals, int memoSize) {
+        if (memoSize < 0) {
+            throw new IllegalArgumentException("Invalid memo size " + memoSize);
+        }
+        this.engine = engine;
+        this.decimals = decimals;
+        this.memo = memoSize == 0 ? null : new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<MemoKey, Environment.PlcObject> eldest) {
+                return size() > memoSize;
+            }
+        };
         scope = new Scope(parent);
         scope.defineFunction("print", 1, args -> {
             System.out.println(args.get(0).getValue());
@@ -26,6 +156,14 @@ public class Interpreter implements Ast.Visitor<Environment.PlcObject> {
 
     @Override
     public Environment.PlcObject visit(Ast.Source ast) {
+        if (engine == Engine.BYTECODE) {
+            return new VirtualMachine(scope, decimals).run(ast);
+        } else if (engine == Engine.TIERED) {
+            machine = new VirtualMachine(scope, decimals);
+        }
+        if (memo != null) {
+            new PurityAnalyzer().visit(ast);
+        }
         // Evaluate globals then functions
         ast.getGlobals().forEach(this::visit);
         ast.getFunctions().forEach(this::visit);
@@ -50,33 +188,151 @@ public class Interpreter implements Ast.Visitor<Environment.PlcObject> {
         if (ast.getName().equals("main") && !ast.getParameters().isEmpty()) {
             throw new RuntimeException("Invalid main arity");
         }
-        scope.defineFunction(ast.getName(), ast.getParameters().size(), args -> {
-            scope = new Scope(scope);
-            argIndex = 0;
+        SourceFunction source = new SourceFunction(ast);
+        java.util.function.Function<List<Environment.PlcObject>, Environment.PlcObject> body = args -> call(source, args);
+        source.function = scope.defineFunction(ast.getName(), ast.getParameters().size(), memo != null && ast.isPure() ? args -> memoize(ast, args, body) : body);
+        sources.put(source.function, source);
+        if (machine != null) {
+            machine.register(source.function, ast);
+        }
+        return Environment.NIL;
+    }
 
-            for (String p : ast.getParameters()) {
-                Environment.Variable v;
-                try {
-                    v = scope.lookupVariable(p);
-                } catch (Exception ex) {
-                    v = new Environment.Variable(p, true, Environment.create(args.get(argIndex).getValue()));
-                    argIndex++;
+    /**
+     * Invokes a function of the source. A call which it returns directly from
+     * its own scope (a tail call) is made here after it has returned instead
+     * of from its statements, so a chain of tail calls between functions of
+     * the source runs in constant stack space. Since functions are
+     * dynamically scoped, the callee still sees the caller's variables, but
+     * the scopes of the callers which have returned are collapsed into one,
+     * which only the callee can see, so the chain of scopes doesn't grow
+     * either.
+     */
+    private Environment.PlcObject call(SourceFunction function, List<Environment.PlcObject> args) {
+        Scope caller = scope;
+        try {
+            while (true) {
+                Environment.PlcObject value = enter(function, args);
+                if (tailCall == null) {
+                    return value;
                 }
-                scope.defineVariable(v.getName(), v.getMutable(), v.getValue());
+                TailCall call = tailCall;
+                tailCall = null;
+                scope = scope.collapse(caller);
+                function = sources.get(call.function);
+                // Other functions (and memoized ones) are invoked as usual
+                if (function == null || memo != null && function.ast.isPure()) {
+                    return call.function.invoke(call.args);
+                }
+                args = call.args;
             }
+        } finally {
+            // Return to parent scope
+            scope = caller;
+        }
+    }
+
+    /**
+     * Evaluates a function in a new scope for its arguments, which is left as
+     * the current scope for a tail call.
+     */
+    private Environment.PlcObject enter(SourceFunction function, List<Environment.PlcObject> args) {
+        Ast.Function ast = function.ast;
+        // Once hot (or when invoked by bytecode, whose frames only the
+        // machine can see), the function runs as bytecode
+        if (machine != null && (function.count[0] >= COMPILE_THRESHOLD || machine.isRunning())) {
+            return machine.invoke(function.function, args, scope);
+        }
+        function.count[0]++;
+        // Resolved on the first call, which leaves lazily parsed bodies
+        // unparsed until then
+        if (!function.resolved) {
+            new Resolver().visit(ast);
+            function.resolved = true;
+        }
+        scope = new Scope(scope);
+        argIndex = 0;
 
-            // Evaluate function statements => return value in Return exception if thrown or NIL if not
+        for (String p : ast.getParameters()) {
+            Environment.Variable v;
             try {
-                ast.getStatements().forEach(this::visit);
-            } catch (Return ex) {
-                return ex.value;
-            } finally {
-                // Return to parent scope
-                scope = scope.getParent();
+                v = scope.lookupVariable(p);
+            } catch (Exception ex) {
+                v = new Environment.Variable(p, true, Environment.create(args.get(argIndex).getValue()));
+                argIndex++;
             }
-            return Environment.NIL;
-        });
-        return Environment.NIL;
+            scope.defineVariable(ast.getParameters().indexOf(p), v.getName(), v.getMutable(), v.getValue());
+        }
+
+        // Evaluate function statements => the returned value if one returns or NIL if not
+        int[] caller = counter;
+        Scope callerFrame = frame;
+        Environment.PlcObject callerReturned = returned;
+        counter = function.count;
+        frame = scope;
+        returned = null;
+        Environment.PlcObject value;
+        try {
+            execute(ast.getStatements());
+            value = returned;
+        } finally {
+            counter = caller;
+            frame = callerFrame;
+            returned = callerReturned;
+        }
+        return value != null ? value : Environment.NIL;
+    }
+
+    /**
+     * Invokes the body of a pure function, or returns its result for the same
+     * arguments if it is memoized. The result only depends on the arguments
+     * if none of the function's caller names are visible, and lists are
+     * neither keys nor results since they can be modified.
+     */
+    private Environment.PlcObject memoize(Ast.Function ast, List<Environment.PlcObject> args, java.util.function.Function<List<Environment.PlcObject>, Environment.PlcObject> body) {
+        if (machine != null && machine.isRunning()) {
+            return body.apply(args);
+        }
+        for (String name : ast.getCallerNames()) {
+            if (scope.isDefined(name)) {
+                return body.apply(args);
+            }
+        }
+        Object[] values = new Object[args.size()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = args.get(i).getValue();
+            if (values[i] instanceof List) {
+                return body.apply(args);
+            }
+        }
+        MemoKey key = new MemoKey(ast, values);
+        Environment.PlcObject result = memo.get(key);
+        if (result != null) {
+            memoHits++;
+            return result;
+        }
+        memoMisses++;
+        result = body.apply(args);
+        if (!(result.getValue() instanceof List)) {
+            memo.put(key, result);
+        }
+        return result;
+    }
+
+    /**
+     * Returns the number of invocations of pure functions whose memoized
+     * result was returned.
+     */
+    public long getMemoHits() {
+        return memoHits;
+    }
+
+    /**
+     * Returns the number of invocations of pure functions which could have
+     * been memoized but weren't, and so were evaluated.
+     */
+    public long getMemoMisses() {
+        return memoMisses;
     }
 
     @Override
@@ -88,10 +344,11 @@ public class Interpreter implements Ast.Visitor<Environment.PlcObject> {
     @Override
     public Environment.PlcObject visit(Ast.Statement.Declaration ast) {
         // Source: Peter Dobbins Lecture 25 25:05
-        if (ast.getValue().isPresent()) {
-            scope.defineVariable(ast.getName(), true, visit(ast.getValue().get()));
+        Environment.PlcObject value = ast.getValue().isPresent() ? visit(ast.getValue().get()) : Environment.NIL;
+        if (ast.getSlot() != -1) {
+            scope.defineVariable(ast.getSlot(), ast.getName(), true, value);
         } else {
-            scope.defineVariable(ast.getName(), true, Environment.NIL);
+            scope.defineVariable(ast.getName(), true, value);
         }
         return Environment.NIL;
     }
@@ -108,19 +365,20 @@ public class Interpreter implements Ast.Visitor<Environment.PlcObject> {
                 BigInteger bigOffset = requireType(BigInteger.class, visit(tempOffset));
                 int offset = bigOffset.intValue();
 
-                Environment.PlcObject obj = scope.lookupVariable(receiver.getName()).getValue();
-                List list = requireType(List.class, obj);
+                Environment.Variable variable = lookupVariable(receiver);
+                List list = requireType(List.class, variable.getValue());
                 list.set(offset, value.getValue());
 
-                scope.lookupVariable(receiver.getName()).setValue(Environment.create(list));
+                variable.setValue(Environment.create(list));
                 return Environment.NIL;
             }
 
-            if (!scope.lookupVariable(receiver.getName()).getMutable()) {
+            Environment.Variable variable = lookupVariable(receiver);
+            if (!variable.getMutable()) {
                 throw new RuntimeException("Immutable variable");
             }
 
-            scope.lookupVariable(receiver.getName()).setValue(value);
+            variable.setValue(value);
         } catch (RuntimeException ex) {
             throw new RuntimeException(ex);
         }
@@ -131,19 +389,30 @@ public class Interpreter implements Ast.Visitor<Environment.PlcObject> {
     @Override
     public Environment.PlcObject visit(Ast.Statement.If ast) {
         Boolean condition = requireType(Boolean.class, visit(ast.getCondition()));
-        try {
-            scope = new Scope(scope);
-            if (condition) {
-                ast.getThenStatements().forEach(this::visit);
-            } else {
-                ast.getElseStatements().forEach(this::visit);
-            }
-        } finally {
-            scope = scope.getParent();
-        }
+        List<Ast.Statement> statements = condition ? ast.getThenStatements() : ast.getElseStatements();
+        // A block without declarations runs in the enclosing scope, as its
+        // own would stay empty
+        execute(statements, (condition ? ast.isThenScoped() : ast.isElseScoped()) ? block(statements) : null);
         return Environment.NIL;
     }
 
+    /**
+     * Returns a scope for a run of an IF branch, which is the one its last run
+     * had, cleared, if that was in the current scope too. A branch can't run
+     * again in the same scope while it is still running, as that takes a
+     * function call, which has its own scope.
+     */
+    private Scope block(List<Ast.Statement> statements) {
+        Scope block = blocks.get(statements);
+        if (block != null && block.getParent() == scope) {
+            block.clear();
+            return block;
+        }
+        block = new Scope(scope);
+        blocks.put(statements, block);
+        return block;
+    }
+
     @Override
     public Environment.PlcObject visit(Ast.Statement.Switch ast) {
         Object conditionValue = visit(ast.getCondition()).getValue();
@@ -163,19 +432,36 @@ public class Interpreter implements Ast.Visitor<Environment.PlcObject> {
     @Override
     public Environment.PlcObject visit(Ast.Statement.Case ast) {
         // Evaluate statements
-        ast.getStatements().forEach(this::visit);
+        execute(ast.getStatements());
         return Environment.NIL;
     }
 
     @Override
     public Environment.PlcObject visit(Ast.Statement.While ast) {
         // Source: Peter Dobbins Lecture 26 42:30
-        while (requireType(Boolean.class, visit(ast.getCondition()))) {
-           try {
-               scope = new Scope(scope);
-               ast.getStatements().forEach(this::visit);
-           } finally {
-               scope = scope.getParent();
+        // Each iteration of a block with declarations runs in the same scope,
+        // cleared, and otherwise in the enclosing scope
+        Scope block = null;
+        while (true) {
+           // A loop which makes its function hot finishes as bytecode
+           if (machine != null && counter != null && counter[0] >= COMPILE_THRESHOLD) {
+               returned = machine.loop(ast, scope);
+               break;
+           }
+           if (!requireType(Boolean.class, visit(ast.getCondition()))) {
+               break;
+           }
+           if (counter != null) {
+               counter[0]++;
+           }
+           if (block != null) {
+               block.clear();
+           } else if (ast.isScoped()) {
+               block = new Scope(scope);
+           }
+           execute(ast.getStatements(), block);
+           if (returned != null) {
+               break;
            }
         }
         return Environment.NIL;
@@ -183,12 +469,67 @@ public class Interpreter implements Ast.Visitor<Environment.PlcObject> {
 
     @Override
     public Environment.PlcObject visit(Ast.Statement.Return ast) {
-        throw new Return(visit(ast.getValue()));
+        // Only an invocation takes the value, which would otherwise be left
+        // for the next one
+        if (frame == null) {
+            throw new RuntimeException("Return outside of a function.");
+        }
+        // A call returned from the scope of a function's own statements is
+        // made by call(), from the same scope
+        if (ast.getValue() instanceof Ast.Expression.Function function && scope == frame) {
+            Environment.Function func = lookupFunction(function);
+            tailCall = new TailCall(func, arguments(function));
+            returned = Environment.NIL;
+        } else {
+            returned = visit(ast.getValue());
+        }
+        return Environment.NIL;
+    }
+
+    /**
+     * Visits the statements of a block in its scope, or in the current scope
+     * if it is null.
+     */
+    private void execute(List<Ast.Statement> statements, Scope block) {
+        if (block == null) {
+            execute(statements);
+            return;
+        }
+        Scope parent = scope;
+        try {
+            scope = block;
+            execute(statements);
+        } finally {
+            scope = parent;
+        }
+    }
+
+    /**
+     * Visits statements in order, stopping after one which returns.
+     */
+    private void execute(List<Ast.Statement> statements) {
+        for (Ast.Statement statement : statements) {
+            visit(statement);
+            if (returned != null) {
+                return;
+            }
+        }
     }
 
     @Override
     public Environment.PlcObject visit(Ast.Expression.Literal ast) {
-        return ast.getLiteral() == null ? Environment.NIL : Environment.create(ast.getLiteral());
+        return ast.getLiteral() == null ? Environment.NIL : Environment.create(literal(ast.getLiteral(), decimals));
+    }
+
+    /**
+     * Returns the value of a literal, as a double if it is a Decimal and the
+     * mode is {@link DecimalMode#DOUBLE}.
+     */
+    static Object literal(Object literal, DecimalMode decimals) {
+        if (decimals == DecimalMode.DOUBLE && literal instanceof BigDecimal decimal) {
+            return decimal.doubleValue();
+        }
+        return literal;
     }
 
     @Override
@@ -202,7 +543,6 @@ public class Interpreter implements Ast.Visitor<Environment.PlcObject> {
         Ast.Expression rhs = ast.getRight();
         Environment.PlcObject lhsValue = visit(lhs);
         Object checkClass = lhsValue.getValue().getClass();
-        RuntimeException err = new RuntimeException("Invalid class type");
         switch (ast.getOperator()) {
             case "&&":
                 if (checkClass.equals(Boolean.class)) {
@@ -214,7 +554,7 @@ public class Interpreter implements Ast.Visitor<Environment.PlcObject> {
                     Boolean compare = leftVal.booleanValue() == rightVal.booleanValue();
                     return Environment.create(compare);
                 }
-                throw err;
+                throw invalidClass();
             case "||":
                 if (checkClass.equals(Boolean.class)) {
                     Boolean leftVal = requireType(Boolean.class, lhsValue);
@@ -227,7 +567,7 @@ public class Interpreter implements Ast.Visitor<Environment.PlcObject> {
                     }
                     return Environment.create(Boolean.FALSE);
                 }
-                throw err;
+                throw invalidClass();
             case "<":
                 if (checkClass.equals(BigInteger.class)) {
                     BigInteger leftVal = requireType(BigInteger.class, lhsValue);
@@ -241,6 +581,12 @@ public class Interpreter implements Ast.Visitor<Environment.PlcObject> {
                     Boolean compare = leftVal.compareTo(rightVal) < 0;
                     return Environment.create(compare);
                 }
+                if (checkClass.equals(Double.class)) {
+                    Double leftVal = requireType(Double.class, lhsValue);
+                    Double rightVal = requireType(Double.class, visit(rhs));
+                    Boolean compare = leftVal.doubleValue() < rightVal.doubleValue();
+                    return Environment.create(compare);
+                }
                 if (checkClass.equals(Boolean.class)) {
                     Boolean leftVal = requireType(Boolean.class, lhsValue);
                     Boolean rightVal = requireType(Boolean.class, visit(rhs));
@@ -253,7 +599,7 @@ public class Interpreter implements Ast.Visitor<Environment.PlcObject> {
                     Boolean compare = leftVal.compareTo(rightVal) < 0;
                     return Environment.create(compare);
                 }
-                throw err;
+                throw invalidClass();
             case ">":
                 if (checkClass.equals(BigInteger.class)) {
                     BigInteger leftVal = requireType(BigInteger.class, lhsValue);
@@ -267,6 +613,12 @@ public class Interpreter implements Ast.Visitor<Environment.PlcObject> {
                     Boolean compare = leftVal.compareTo(rightVal) > 0;
                     return Environment.create(compare);
                 }
+                if (checkClass.equals(Double.class)) {
+                    Double leftVal = requireType(Double.class, lhsValue);
+                    Double rightVal = requireType(Double.class, visit(rhs));
+                    Boolean compare = leftVal.doubleValue() > rightVal.doubleValue();
+                    return Environment.create(compare);
+                }
                 if (checkClass.equals(Boolean.class)) {
                     Boolean leftVal = requireType(Boolean.class, lhsValue);
                     Boolean rightVal = requireType(Boolean.class, visit(rhs));
@@ -279,11 +631,11 @@ public class Interpreter implements Ast.Visitor<Environment.PlcObject> {
                     Boolean compare = leftVal.compareTo(rightVal) > 0;
                     return Environment.create(compare);
                 }
-                throw err;
+                throw invalidClass();
             case "==":
-                return Environment.create(Objects.equals(lhsValue.getValue(), visit(rhs).getValue()));
+                return Environment.create(equals(lhsValue.getValue(), visit(rhs).getValue()));
             case "!=":
-                return Environment.create(!Objects.equals(lhsValue.getValue(), visit(rhs).getValue()));
+                return Environment.create(!equals(lhsValue.getValue(), visit(rhs).getValue()));
             case "+":
                 if (checkClass.equals(BigInteger.class)) {
                     return Environment.create(bigIntegerAdd(lhsValue, visit(rhs)));
@@ -291,6 +643,9 @@ public class Interpreter implements Ast.Visitor<Environment.PlcObject> {
                 if (checkClass.equals(BigDecimal.class)) {
                     return Environment.create(bigDecimalAdd(lhsValue, visit(rhs)));
                 }
+                if (checkClass.equals(Double.class)) {
+                    return Environment.create(doubleAdd(lhsValue, visit(rhs)));
+                }
                 // If either expression is a String concat
                 if (checkClass.equals(String.class) || visit(rhs).getValue().getClass().equals(String.class)) {
                     String leftVal = visit(lhs).getValue().toString();
@@ -298,7 +653,7 @@ public class Interpreter implements Ast.Visitor<Environment.PlcObject> {
                     String concat = leftVal.concat(rightVal);
                     return Environment.create(concat);
                 }
-                throw err;
+                throw invalidClass();
             case "-":
                 if (checkClass.equals(BigInteger.class)) {
                     return Environment.create(bigIntegerSub(lhsValue, visit(rhs)));
@@ -306,7 +661,10 @@ public class Interpreter implements Ast.Visitor<Environment.PlcObject> {
                 if (checkClass.equals(BigDecimal.class)) {
                     return Environment.create(bigDecimalSub(lhsValue, visit(rhs)));
                 }
-                throw err;
+                if (checkClass.equals(Double.class)) {
+                    return Environment.create(doubleSub(lhsValue, visit(rhs)));
+                }
+                throw invalidClass();
             case "*":
                 if (checkClass.equals(BigInteger.class)) {
                    return Environment.create(bigIntegerMult(lhsValue, visit(rhs)));
@@ -314,7 +672,10 @@ public class Interpreter implements Ast.Visitor<Environment.PlcObject> {
                 if (checkClass.equals(BigDecimal.class)) {
                     return Environment.create(bigDecimalMult(lhsValue, visit(rhs)));
                 }
-                throw err;
+                if (checkClass.equals(Double.class)) {
+                    return Environment.create(doubleMult(lhsValue, visit(rhs)));
+                }
+                throw invalidClass();
             case "/":
                 try {
                     if (checkClass.equals(BigInteger.class)) {
@@ -323,6 +684,9 @@ public class Interpreter implements Ast.Visitor<Environment.PlcObject> {
                     if (checkClass.equals(BigDecimal.class)) {
                         return Environment.create(bigDecimalDiv(lhsValue, visit(rhs)));
                     }
+                    if (checkClass.equals(Double.class)) {
+                        return Environment.create(doubleDiv(lhsValue, visit(rhs)));
+                    }
                 } catch (ArithmeticException ex) {
                     throw new RuntimeException(ex.getMessage());
                 }
@@ -330,12 +694,20 @@ public class Interpreter implements Ast.Visitor<Environment.PlcObject> {
                 if (checkClass.equals(BigInteger.class)) {
                     return Environment.create(bigIntegerExp(lhsValue, visit(rhs)));
                 }
-                throw err;
+                throw invalidClass();
             default:
-                throw err;
+                throw invalidClass();
         }
     }
 
+    /**
+     * Returns the exception for an invalid operand, which is only created
+     * when it is thrown as filling in its stack trace is costly.
+     */
+    private static RuntimeException invalidClass() {
+        return new RuntimeException("Invalid class type");
+    }
+
     private BigInteger bigIntegerAdd(Environment.PlcObject lhs, Environment.PlcObject rhs) {
         BigInteger leftVal = requireType(BigInteger.class, lhs);
         BigInteger rightVal = requireType(BigInteger.class, rhs);
@@ -390,6 +762,32 @@ public class Interpreter implements Ast.Visitor<Environment.PlcObject> {
         return leftVal.divide(rightVal, RoundingMode.HALF_EVEN);
     }
 
+    private double doubleAdd(Environment.PlcObject lhs, Environment.PlcObject rhs) {
+        return requireType(Double.class, lhs) + requireType(Double.class, rhs);
+    }
+
+    private double doubleSub(Environment.PlcObject lhs, Environment.PlcObject rhs) {
+        return requireType(Double.class, lhs) - requireType(Double.class, rhs);
+    }
+
+    private double doubleMult(Environment.PlcObject lhs, Environment.PlcObject rhs) {
+        return requireType(Double.class, lhs) * requireType(Double.class, rhs);
+    }
+
+    private double doubleDiv(Environment.PlcObject lhs, Environment.PlcObject rhs) {
+        return requireType(Double.class, lhs) / requireType(Double.class, rhs);
+    }
+
+    /**
+     * Returns whether two values are equal, comparing doubles as primitives.
+     */
+    static boolean equals(Object left, Object right) {
+        if (left instanceof Double l && right instanceof Double r) {
+            return l.doubleValue() == r.doubleValue();
+        }
+        return Objects.equals(left, right);
+    }
+
     @Override
     public Environment.PlcObject visit(Ast.Expression.Access ast) {
         Optional<Ast.Expression> exp = ast.getOffset();
@@ -399,7 +797,7 @@ public class Interpreter implements Ast.Visitor<Environment.PlcObject> {
             BigInteger temp = requireType(BigInteger.class, value);
             int offset = temp.intValue();
 
-            Environment.Variable var = scope.lookupVariable(ast.getName());
+            Environment.Variable var = lookupVariable(ast);
             List list = requireType(List.class, var.getValue());
 
             if (offset < 0 || offset > list.size()-1) {
@@ -411,20 +809,50 @@ public class Interpreter implements Ast.Visitor<Environment.PlcObject> {
             return Environment.create(access);
         }
 
-        Object returnValue = scope.lookupVariable(ast.getName()).getValue().getValue();
-        return Environment.create(returnValue);
+        // Objects are immutable, so the variable's own object is returned
+        return lookupVariable(ast).getValue();
+    }
+
+    /**
+     * Looks up the variable of an access by its slot if it was resolved, and
+     * otherwise by name.
+     */
+    private Environment.Variable lookupVariable(Ast.Expression.Access ast) {
+        if (ast.isResolved()) {
+            return scope.lookupVariable(ast.getDepth(), ast.getSlot(), ast.getName());
+        }
+        return scope.lookupVariable(ast.getName());
     }
 
     @Override
     public Environment.PlcObject visit(Ast.Expression.Function ast) {
-        List<Ast.Expression> args = ast.getArguments();
-        Environment.Function func = scope.lookupFunction(ast.getName(), ast.getArguments().size());
+        Environment.Function func = lookupFunction(ast);
+        return func.invoke(arguments(ast));
+    }
+
+    private Environment.Function lookupFunction(Ast.Expression.Function ast) {
+        // Functions are only defined in the global scope (and those around
+        // it), so a call resolves the same from any scope until another
+        // function is defined
+        int definitions = scope.getFunctionDefinitions();
+        if (definitions != callSiteDefinitions) {
+            callSites.clear();
+            callSiteDefinitions = definitions;
+        }
+        Environment.Function func = callSites.get(ast);
+        if (func == null) {
+            func = scope.lookupFunction(ast.getName(), ast.getArguments().size());
+            callSites.put(ast, func);
+        }
+        return func;
+    }
+
+    private List<Environment.PlcObject> arguments(Ast.Expression.Function ast) {
         List<Environment.PlcObject> invokeArgs = new ArrayList<>();
-        for (Ast.Expression exp : args) {
+        for (Ast.Expression exp : ast.getArguments()) {
             invokeArgs.add(visit(exp));
         }
-        Environment.PlcObject funcValue = func.invoke(invokeArgs);
-        return Environment.create(funcValue.getValue());
+        return invokeArgs;
     }
 
     @Override
@@ -448,14 +876,64 @@ public class Interpreter implements Ast.Visitor<Environment.PlcObject> {
     }
 
     /**
-     * Exception class for returning values.
+     * A function of the source, with what its invocations need.
+     */
+    private static final class SourceFunction {
+
+        private final Ast.Function ast;
+        private Environment.Function function;
+        private boolean resolved = false;
+
+        /**
+         * The invocations and loop iterations of the function, for the
+         * {@link Engine#TIERED} engine.
+         */
+        private final int[] count = {0};
+
+        private SourceFunction(Ast.Function ast) {
+            this.ast = ast;
+        }
+
+    }
+
+    /**
+     * A function with the arguments it is to be invoked with.
      */
-    public static class Return extends RuntimeException {
+    private static final class TailCall {
+
+        private final Environment.Function function;
+        private final List<Environment.PlcObject> args;
 
-        private final Environment.PlcObject value;
+        private TailCall(Environment.Function function, List<Environment.PlcObject> args) {
+            this.function = function;
+            this.args = args;
+        }
+
+    }
+
+    /**
+     * A pure function with the values of its arguments.
+     */
+    private static final class MemoKey {
+
+        private final Ast.Function function;
+        private final Object[] values;
+
+        private MemoKey(Ast.Function function, Object[] values) {
+            this.function = function;
+            this.values = values;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            return obj instanceof MemoKey
+                    && function == ((MemoKey) obj).function
+                    && Arrays.equals(values, ((MemoKey) obj).values);
+        }
 
-        private Return(Environment.PlcObject value) {
-            this.value = value;
+        @Override
+        public int hashCode() {
+            return 31 * System.identityHashCode(function) + Arrays.hashCode(values);
         }
 
     }
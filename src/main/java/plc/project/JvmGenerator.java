@@ -0,0 +1,629 @@
+package plc.project;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Generates the class the {@link Generator} would write as {@code Main.java}
+ * directly as JVM class bytes, from a source analyzed by the {@link Analyzer}
+ * (whose types it relies on), so the program can be loaded as a hidden class
+ * and run in-process with {@link #run()}.
+ *
+ * The class has the semantics of the generated Java, with a few differences
+ * where that Java would not compile: {@code ^} is an Integer (as analyzed),
+ * {@code ==} and cases compare objects by equality, variables without a value
+ * start with the default one, and a function with a return type which ends
+ * without a {@code RETURN} throws an {@link IllegalStateException}. There is
+ * no static {@code main} method; {@code run} returns {@code main()}.
+ */
+public final class JvmGenerator implements Ast.Visitor<Void> {
+
+    /**
+     * The name of the class, which must be in this package to be defined as a
+     * hidden class through its lookup.
+     */
+    public static final String NAME = "plc/project/Main";
+
+    private static final String OBJECT = "Ljava/lang/Object;";
+    private static final String STRING = "Ljava/lang/String;";
+    private static final String VOID = "Ljava/lang/Void;";
+
+    private final ClassFile classFile = new ClassFile(NAME, "java/lang/Object");
+    private final Map<String, String> fields = new HashMap<>();
+    private final List<Map<String, Local>> scopes = new ArrayList<>();
+    private ClassFile.Code code;
+    private String returnDescriptor;
+    private byte[] bytes;
+
+    /**
+     * Returns the class bytes of the visited source.
+     */
+    public byte[] getBytes() {
+        if (bytes == null) {
+            throw new IllegalStateException("No source has been generated.");
+        }
+        return bytes;
+    }
+
+    /**
+     * Defines the class of the visited source as a hidden class, returning the
+     * result of calling {@code main()} on a new instance. Any exception thrown
+     * by the program is rethrown.
+     */
+    public int run() {
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.lookup().defineHiddenClass(getBytes(), true);
+            Object main = lookup.findConstructor(lookup.lookupClass(), MethodType.methodType(void.class)).invoke();
+            return (int) lookup.findVirtual(lookup.lookupClass(), "main", MethodType.methodType(int.class)).invoke(main);
+        } catch (RuntimeException | Error ex) {
+            throw ex;
+        } catch (Throwable ex) {
+            throw new RuntimeException(ex);
+        }
+    }
+
+    @Override
+    public Void visit(Ast.Source ast) {
+        code = classFile.new Code(ClassFile.ACC_PUBLIC, "<init>", "()V", 1);
+        code.local(ClassFile.ALOAD, 0, 1);
+        code.invoke(ClassFile.INVOKESPECIAL, "java/lang/Object", "<init>", "()V", -1);
+        ast.getGlobals().forEach(this::visit);
+        code.op(ClassFile.RETURN, 0);
+        code.end();
+        ast.getFunctions().forEach(this::visit);
+        bytes = classFile.toByteArray(ClassFile.ACC_PUBLIC | ClassFile.ACC_FINAL | ClassFile.ACC_SUPER);
+        return null;
+    }
+
+    /**
+     * Declares the global's field, initializing it in the constructor. A
+     * global with a list value is an array of its type.
+     */
+    @Override
+    public Void visit(Ast.Global ast) {
+        String descriptor = descriptor(ast.getVariable().getType());
+        if (ast.getValue().isPresent() && ast.getValue().get() instanceof Ast.Expression.PlcList) {
+            descriptor = "[" + descriptor;
+        }
+        classFile.field(ast.getMutable() ? 0 : ClassFile.ACC_FINAL, ast.getName(), descriptor);
+        fields.put(ast.getName(), descriptor);
+        if (ast.getValue().isPresent()) {
+            code.local(ClassFile.ALOAD, 0, 1);
+            emit(ast.getValue().get(), descriptor);
+            code.op2(ClassFile.PUTFIELD, classFile.memberConstant(9, NAME, ast.getName(), descriptor), -1 - size(descriptor));
+        }
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Function ast) {
+        Environment.Function function = ast.getFunction();
+        StringBuilder descriptor = new StringBuilder("(");
+        function.getParameterTypes().forEach(type -> descriptor.append(descriptor(type)));
+        returnDescriptor = descriptor(function.getReturnType());
+        descriptor.append(")").append(returnDescriptor);
+
+        code = classFile.new Code(ClassFile.ACC_PUBLIC, function.getJvmName(), descriptor.toString(), 1);
+        scopes.add(new HashMap<>());
+        for (int i = 0; i < ast.getParameters().size(); i++) {
+            declare(ast.getParameters().get(i), descriptor(function.getParameterTypes().get(i)));
+        }
+        ast.getStatements().forEach(this::visit);
+        scopes.clear();
+
+        if (returnDescriptor.equals(VOID)) {
+            code.op(ClassFile.ACONST_NULL, 1);
+            code.op(ClassFile.ARETURN, -1);
+        } else {
+            code.op2(ClassFile.NEW, classFile.classConstant("java/lang/IllegalStateException"), 1);
+            code.op(ClassFile.DUP, 1);
+            code.ldc(classFile.stringConstant("Missing RETURN in function " + ast.getName() + "."));
+            code.invoke(ClassFile.INVOKESPECIAL, "java/lang/IllegalStateException", "<init>", "(Ljava/lang/String;)V", -2);
+            code.op(ClassFile.ATHROW, -1);
+        }
+        code.end();
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Statement.Expression ast) {
+        visit(ast.getExpression());
+        code.op(size(typeOf(ast.getExpression())) == 2 ? ClassFile.POP2 : ClassFile.POP, -size(typeOf(ast.getExpression())));
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Statement.Declaration ast) {
+        String descriptor = descriptor(ast.getVariable().getType());
+        if (ast.getValue().isPresent()) {
+            emit(ast.getValue().get(), descriptor);
+        } else {
+            switch (descriptor) {
+                case "I", "Z", "C" -> code.pushInt(0);
+                case "D" -> code.op(ClassFile.DCONST_0, 2);
+                default -> code.op(ClassFile.ACONST_NULL, 1);
+            }
+        }
+        store(declare(ast.getName(), descriptor));
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Statement.Assignment ast) {
+        Ast.Expression.Access receiver = (Ast.Expression.Access) ast.getReceiver();
+        Local local = lookup(receiver.getName());
+        if (local != null) {
+            emit(ast.getValue(), local.descriptor);
+            store(local);
+        } else if (receiver.getOffset().isPresent()) {
+            String descriptor = field(receiver.getName());
+            String element = descriptor.substring(1);
+            code.local(ClassFile.ALOAD, 0, 1);
+            code.op2(ClassFile.GETFIELD, classFile.memberConstant(9, NAME, receiver.getName(), descriptor), 0);
+            emit(receiver.getOffset().get(), "I");
+            emit(ast.getValue(), element);
+            code.op(arrayStore(element), -2 - size(element));
+        } else {
+            String descriptor = field(receiver.getName());
+            code.local(ClassFile.ALOAD, 0, 1);
+            emit(ast.getValue(), descriptor);
+            code.op2(ClassFile.PUTFIELD, classFile.memberConstant(9, NAME, receiver.getName(), descriptor), -1 - size(descriptor));
+        }
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Statement.If ast) {
+        ClassFile.Label otherwise = new ClassFile.Label();
+        emit(ast.getCondition(), "Z");
+        code.jump(ClassFile.IFEQ, otherwise, -1);
+        block(ast.getThenStatements());
+        if (ast.getElseStatements().isEmpty()) {
+            code.mark(otherwise);
+        } else {
+            ClassFile.Label end = new ClassFile.Label();
+            code.jump(ClassFile.GOTO, end, 0);
+            code.mark(otherwise);
+            block(ast.getElseStatements());
+            code.mark(end);
+        }
+        return null;
+    }
+
+    /**
+     * Compares the condition with each case's value in turn, jumping to the
+     * first which is equal or else to the last case.
+     */
+    @Override
+    public Void visit(Ast.Statement.Switch ast) {
+        String descriptor = typeOf(ast.getCondition());
+        visit(ast.getCondition());
+        Local condition = new Local(code.allocate(size(descriptor)), descriptor);
+        store(condition);
+
+        List<ClassFile.Label> labels = new ArrayList<>();
+        for (Ast.Statement.Case caseStatement : ast.getCases()) {
+            ClassFile.Label label = new ClassFile.Label();
+            labels.add(label);
+            if (caseStatement.getValue().isPresent()) {
+                load(condition);
+                emit(caseStatement.getValue().get(), descriptor);
+                switch (descriptor) {
+                    case "I", "Z", "C" -> code.jump(ClassFile.IF_ICMPEQ, label, -2);
+                    case "D" -> {
+                        code.op(ClassFile.DCMPL, -3);
+                        code.jump(ClassFile.IFEQ, label, -1);
+                    }
+                    default -> {
+                        code.invoke(ClassFile.INVOKESTATIC, "java/util/Objects", "equals", "(Ljava/lang/Object;Ljava/lang/Object;)Z", -1);
+                        code.jump(ClassFile.IFNE, label, -1);
+                    }
+                }
+            }
+        }
+        code.jump(ClassFile.GOTO, labels.getLast(), 0);
+
+        ClassFile.Label end = new ClassFile.Label();
+        for (int i = 0; i < ast.getCases().size(); i++) {
+            code.mark(labels.get(i));
+            visit(ast.getCases().get(i));
+            if (i < ast.getCases().size() - 1) {
+                code.jump(ClassFile.GOTO, end, 0);
+            }
+        }
+        code.mark(end);
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Statement.Case ast) {
+        block(ast.getStatements());
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Statement.While ast) {
+        ClassFile.Label start = new ClassFile.Label();
+        ClassFile.Label end = new ClassFile.Label();
+        code.mark(start);
+        emit(ast.getCondition(), "Z");
+        code.jump(ClassFile.IFEQ, end, -1);
+        block(ast.getStatements());
+        code.jump(ClassFile.GOTO, start, 0);
+        code.mark(end);
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Statement.Return ast) {
+        emit(ast.getValue(), returnDescriptor);
+        int opcode = switch (returnDescriptor) {
+            case "I", "Z", "C" -> ClassFile.IRETURN;
+            case "D" -> ClassFile.DRETURN;
+            default -> ClassFile.ARETURN;
+        };
+        code.op(opcode, -size(returnDescriptor));
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Expression.Literal ast) {
+        Object literal = ast.getLiteral();
+        if (literal == null) {
+            code.op(ClassFile.ACONST_NULL, 1);
+        } else if (literal instanceof Boolean value) {
+            code.pushInt(value ? 1 : 0);
+        } else if (literal instanceof Character value) {
+            code.pushInt(value);
+        } else if (literal instanceof BigInteger value) {
+            code.pushInt(value.intValue());
+        } else if (literal instanceof BigDecimal value) {
+            code.op2(ClassFile.LDC2_W, classFile.doubleConstant(value.doubleValue()), 2);
+        } else {
+            code.ldc(classFile.stringConstant(literal.toString()));
+        }
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Expression.Group ast) {
+        visit(ast.getExpression());
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Expression.Binary ast) {
+        String left = typeOf(ast.getLeft());
+        switch (ast.getOperator()) {
+            case "&&", "||" -> {
+                boolean and = ast.getOperator().equals("&&");
+                ClassFile.Label shortCircuit = new ClassFile.Label();
+                emit(ast.getLeft(), "Z");
+                code.jump(and ? ClassFile.IFEQ : ClassFile.IFNE, shortCircuit, -1);
+                emit(ast.getRight(), "Z");
+                code.jump(and ? ClassFile.IFEQ : ClassFile.IFNE, shortCircuit, -1);
+                bool(!and, shortCircuit);
+            }
+            case "<", ">", "==", "!=" -> {
+                boolean equality = ast.getOperator().equals("==") || ast.getOperator().equals("!=");
+                int test = switch (ast.getOperator()) {
+                    case "<" -> ClassFile.IFLT;
+                    case ">" -> ClassFile.IFGT;
+                    case "==" -> ClassFile.IFEQ;
+                    default -> ClassFile.IFNE;
+                };
+                ClassFile.Label isTrue = new ClassFile.Label();
+                visit(ast.getLeft());
+                emit(ast.getRight(), left);
+                switch (left) {
+                    case "I", "Z", "C" -> code.jump(test - ClassFile.IFEQ + ClassFile.IF_ICMPEQ, isTrue, -2);
+                    case "D" -> {
+                        code.op(test == ClassFile.IFLT ? ClassFile.DCMPG : ClassFile.DCMPL, -3);
+                        code.jump(test, isTrue, -1);
+                    }
+                    default -> {
+                        if (equality) {
+                            code.invoke(ClassFile.INVOKESTATIC, "java/util/Objects", "equals", "(Ljava/lang/Object;Ljava/lang/Object;)Z", -1);
+                            code.jump(test == ClassFile.IFEQ ? ClassFile.IFNE : ClassFile.IFEQ, isTrue, -1);
+                        } else {
+                            code.invoke(ClassFile.INVOKEINTERFACE, "java/lang/Comparable", "compareTo", "(Ljava/lang/Object;)I", -1);
+                            code.jump(test, isTrue, -1);
+                        }
+                    }
+                }
+                bool(true, isTrue);
+            }
+            case "+" -> {
+                if (descriptor(ast.getType()).equals(STRING)) {
+                    string(ast.getLeft());
+                    string(ast.getRight());
+                    code.invoke(ClassFile.INVOKEVIRTUAL, "java/lang/String", "concat", "(Ljava/lang/String;)Ljava/lang/String;", -1);
+                } else {
+                    arithmetic(ast, left, ClassFile.IADD, ClassFile.DADD);
+                }
+            }
+            case "-" -> arithmetic(ast, left, ClassFile.ISUB, ClassFile.DSUB);
+            case "*" -> arithmetic(ast, left, ClassFile.IMUL, ClassFile.DMUL);
+            case "/" -> arithmetic(ast, left, ClassFile.IDIV, ClassFile.DDIV);
+            case "^" -> {
+                emit(ast.getLeft(), "I");
+                code.op(ClassFile.I2D, 1);
+                emit(ast.getRight(), "I");
+                code.op(ClassFile.I2D, 1);
+                code.invoke(ClassFile.INVOKESTATIC, "java/lang/Math", "pow", "(DD)D", -2);
+                code.op(ClassFile.D2I, -1);
+            }
+            default -> throw new RuntimeException("Unknown operator " + ast.getOperator() + ".");
+        }
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Expression.Access ast) {
+        Local local = lookup(ast.getName());
+        if (local != null) {
+            load(local);
+            return null;
+        }
+        String descriptor = field(ast.getName());
+        code.local(ClassFile.ALOAD, 0, 1);
+        code.op2(ClassFile.GETFIELD, classFile.memberConstant(9, NAME, ast.getName(), descriptor), size(descriptor) - 1);
+        if (ast.getOffset().isPresent()) {
+            String element = descriptor.substring(1);
+            emit(ast.getOffset().get(), "I");
+            code.op(arrayLoad(element), size(element) - 2);
+        }
+        return null;
+    }
+
+    /**
+     * Calls the method of a function, or for {@code print} the overload of
+     * {@code System.out.println} Java would choose, leaving null as its value.
+     */
+    @Override
+    public Void visit(Ast.Expression.Function ast) {
+        Environment.Function function = ast.getFunction();
+        if (function.getJvmName().equals("System.out.println")) {
+            code.op2(ClassFile.GETSTATIC, classFile.memberConstant(9, "java/lang/System", "out", "Ljava/io/PrintStream;"), 1);
+            String argument = typeOf(ast.getArguments().getFirst());
+            String parameter = switch (argument) {
+                case "I", "D", "Z", "C", "[C", STRING -> argument;
+                default -> OBJECT;
+            };
+            emit(ast.getArguments().getFirst(), parameter);
+            code.invoke(ClassFile.INVOKEVIRTUAL, "java/io/PrintStream", "println", "(" + parameter + ")V", -1 - size(parameter));
+            code.op(ClassFile.ACONST_NULL, 1);
+            return null;
+        }
+
+        StringBuilder descriptor = new StringBuilder("(");
+        int size = 0;
+        code.local(ClassFile.ALOAD, 0, 1);
+        for (int i = 0; i < ast.getArguments().size(); i++) {
+            String parameter = descriptor(function.getParameterTypes().get(i));
+            emit(ast.getArguments().get(i), parameter);
+            descriptor.append(parameter);
+            size += size(parameter);
+        }
+        String returns = descriptor(function.getReturnType());
+        descriptor.append(")").append(returns);
+        code.invoke(ClassFile.INVOKEVIRTUAL, NAME, function.getJvmName(), descriptor.toString(), size(returns) - 1 - size);
+        return null;
+    }
+
+    /**
+     * Creates the array of a global's list value.
+     */
+    @Override
+    public Void visit(Ast.Expression.PlcList ast) {
+        String element = descriptor(ast.getType());
+        code.pushInt(ast.getValues().size());
+        switch (element) {
+            case "Z" -> code.op(ClassFile.NEWARRAY, 4, 0);
+            case "C" -> code.op(ClassFile.NEWARRAY, 5, 0);
+            case "D" -> code.op(ClassFile.NEWARRAY, 7, 0);
+            case "I" -> code.op(ClassFile.NEWARRAY, 10, 0);
+            default -> code.op2(ClassFile.ANEWARRAY, classFile.classConstant(element.substring(1, element.length() - 1)), 0);
+        }
+        for (int i = 0; i < ast.getValues().size(); i++) {
+            code.op(ClassFile.DUP, 1);
+            code.pushInt(i);
+            emit(ast.getValues().get(i), element);
+            code.op(arrayStore(element), -2 - size(element));
+        }
+        return null;
+    }
+
+    /**
+     * A local variable, with its index and type descriptor.
+     */
+    private static final class Local {
+
+        private final int index;
+        private final String descriptor;
+
+        private Local(int index, String descriptor) {
+            this.index = index;
+            this.descriptor = descriptor;
+        }
+
+    }
+
+    private Local declare(String name, String descriptor) {
+        Local local = new Local(code.allocate(size(descriptor)), descriptor);
+        scopes.getLast().put(name, local);
+        return local;
+    }
+
+    private Local lookup(String name) {
+        for (int i = scopes.size() - 1; i >= 0; i--) {
+            Local local = scopes.get(i).get(name);
+            if (local != null) {
+                return local;
+            }
+        }
+        return null;
+    }
+
+    private String field(String name) {
+        String descriptor = fields.get(name);
+        if (descriptor == null) {
+            throw new RuntimeException("The variable " + name + " is not defined.");
+        }
+        return descriptor;
+    }
+
+    private void block(List<Ast.Statement> statements) {
+        scopes.add(new HashMap<>());
+        statements.forEach(this::visit);
+        scopes.removeLast();
+    }
+
+    private void load(Local local) {
+        int opcode = switch (local.descriptor) {
+            case "I", "Z", "C" -> ClassFile.ILOAD;
+            case "D" -> ClassFile.DLOAD;
+            default -> ClassFile.ALOAD;
+        };
+        code.local(opcode, local.index, size(local.descriptor));
+    }
+
+    private void store(Local local) {
+        int opcode = switch (local.descriptor) {
+            case "I", "Z", "C" -> ClassFile.ISTORE;
+            case "D" -> ClassFile.DSTORE;
+            default -> ClassFile.ASTORE;
+        };
+        code.local(opcode, local.index, -size(local.descriptor));
+    }
+
+    /**
+     * Pushes a boolean after a jump to the label if the result is the given
+     * value, with the stack as it was before the operands.
+     */
+    private void bool(boolean value, ClassFile.Label label) {
+        ClassFile.Label end = new ClassFile.Label();
+        code.pushInt(value ? 0 : 1);
+        code.jump(ClassFile.GOTO, end, 0);
+        code.mark(label);
+        code.setStack(code.getStack() - 1);
+        code.pushInt(value ? 1 : 0);
+        code.mark(end);
+    }
+
+    private void arithmetic(Ast.Expression.Binary ast, String left, int integer, int decimal) {
+        visit(ast.getLeft());
+        emit(ast.getRight(), left);
+        if (left.equals("D")) {
+            code.op(decimal, -2);
+        } else {
+            code.op(integer, -1);
+        }
+    }
+
+    /**
+     * Pushes the string form of an expression's value, as in Java's string
+     * concatenation.
+     */
+    private void string(Ast.Expression expression) {
+        String descriptor = typeOf(expression);
+        visit(expression);
+        if (!descriptor.equals(STRING)) {
+            String parameter = switch (descriptor) {
+                case "I", "D", "Z", "C" -> descriptor;
+                default -> OBJECT;
+            };
+            code.invoke(ClassFile.INVOKESTATIC, "java/lang/String", "valueOf", "(" + parameter + ")" + STRING, 1 - size(parameter));
+        }
+    }
+
+    /**
+     * Pushes the value of an expression converted to the type with the
+     * descriptor, boxing primitives as needed.
+     */
+    private void emit(Ast.Expression expression, String descriptor) {
+        String type = typeOf(expression);
+        visit(expression);
+        if (type.equals(descriptor) || !isPrimitive(type) && !isPrimitive(descriptor)) {
+            return;
+        }
+        if (isPrimitive(descriptor)) {
+            throw new RuntimeException("Expected " + descriptor + ", received " + type + ".");
+        }
+        String box = switch (type) {
+            case "I" -> "java/lang/Integer";
+            case "D" -> "java/lang/Double";
+            case "Z" -> "java/lang/Boolean";
+            default -> "java/lang/Character";
+        };
+        code.invoke(ClassFile.INVOKESTATIC, box, "valueOf", "(" + type + ")L" + box + ";", 1 - size(type));
+    }
+
+    /**
+     * Returns the descriptor of the value an expression pushes.
+     */
+    private String typeOf(Ast.Expression expression) {
+        if (expression instanceof Ast.Expression.Access access) {
+            Local local = lookup(access.getName());
+            if (local != null) {
+                return local.descriptor;
+            }
+            String descriptor = field(access.getName());
+            return access.getOffset().isPresent() ? descriptor.substring(1) : descriptor;
+        } else if (expression instanceof Ast.Expression.Function function) {
+            return function.getFunction().getJvmName().equals("System.out.println") ? VOID : descriptor(function.getFunction().getReturnType());
+        } else if (expression instanceof Ast.Expression.Group group) {
+            return typeOf(group.getExpression());
+        } else if (expression instanceof Ast.Expression.PlcList) {
+            return "[" + descriptor(expression.getType());
+        }
+        return descriptor(expression.getType());
+    }
+
+    private static String descriptor(Environment.Type type) {
+        return switch (type.getJvmName()) {
+            case "int" -> "I";
+            case "double" -> "D";
+            case "boolean" -> "Z";
+            case "char" -> "C";
+            default -> type.getJvmName().contains(".")
+                    ? "L" + type.getJvmName().replace('.', '/') + ";"
+                    : "Ljava/lang/" + type.getJvmName() + ";";
+        };
+    }
+
+    private static boolean isPrimitive(String descriptor) {
+        return descriptor.length() == 1;
+    }
+
+    private static int size(String descriptor) {
+        return descriptor.equals("D") || descriptor.equals("J") ? 2 : 1;
+    }
+
+    private static int arrayLoad(String element) {
+        return switch (element) {
+            case "I" -> ClassFile.IALOAD;
+            case "D" -> ClassFile.DALOAD;
+            case "Z" -> ClassFile.BALOAD;
+            case "C" -> ClassFile.CALOAD;
+            default -> ClassFile.AALOAD;
+        };
+    }
+
+    private static int arrayStore(String element) {
+        return switch (element) {
+            case "I" -> ClassFile.IASTORE;
+            case "D" -> ClassFile.DASTORE;
+            case "Z" -> ClassFile.BASTORE;
+            case "C" -> ClassFile.CASTORE;
+            default -> ClassFile.AASTORE;
+        };
+    }
+
+}
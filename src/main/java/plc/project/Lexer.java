@@ -1,8 +1,18 @@
 package plc.project;
 
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
 import java.math.BigInteger;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
 import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
 
 /**
  * The lexer works through three main functions:
@@ -16,12 +26,49 @@ import java.util.List;
  * invalid.
  *
  * The {@link #peek(String...)} and {@link #match(String...)} functions are * helpers you need to use, they will make the implementation a lot easier. */
-public final class Lexer {
+public final class Lexer implements Iterator<Token> {
+
+    /**
+     * The implementation used by {@link #lexToken()}. Both engines produce the
+     * same tokens and the same {@link ParseException} indices.
+     *
+     *  - {@link #REGEX}, matching each character against the grammar's regexes
+     *  - {@link #TABLE}, a character class table driving a DFA ({@link DfaLexer})
+     */
+    public enum Engine {
+        REGEX,
+        TABLE
+    }
+
+    private static final int MIN_CHUNK_SIZE = 1 << 16;
 
     private final CharStream chars;
+    private final Engine engine;
 
     public Lexer(String input) {
+        this(input, Engine.REGEX);
+    }
+
+    public Lexer(String input, Engine engine) {
         chars = new CharStream(input);
+        this.engine = engine;
+    }
+
+    /**
+     * Lexes {@code input[start, end)}, with token indices into the whole input.
+     */
+    Lexer(String input, int start, int end, Engine engine) {
+        chars = new CharStream(input, start, end);
+        this.engine = engine;
+    }
+
+    /**
+     * Lexes directly from a reader (such as a source file) without reading the
+     * whole input into memory first, see {@link CharStream}.
+     */
+    public Lexer(Reader input, Engine engine) {
+        chars = new CharStream(input);
+        this.engine = engine;
     }
 
     /**
@@ -30,21 +77,146 @@ public final class Lexer {
      */
     public List<Token> lex() {
         List<Token> tokens = new ArrayList<>();
-        while (chars.index < chars.input.length()) {
+        while (hasNext()) {
+            tokens.add(next());
+        }
+        return tokens;
+    }
+
+    /**
+     * Lexes the input in the same way as {@link #lex()}, but splits large
+     * inputs into chunks which are lexed in parallel on the common {@link
+     * ForkJoinPool}. The result, including any {@link ParseException}, is
+     * identical to {@link #lex()}.
+     *
+     * Chunks end after a newline, which is whitespace between tokens. The one
+     * exception is a newline directly after a {@code '}, since the character
+     * literal it may open reports a different error there than at the end of
+     * the input, so those newlines are never used as boundaries.
+     */
+    public List<Token> lexParallel() {
+        if (chars.input == null) {
+            throw new IllegalStateException("Parallel lexing requires the input as a string.");
+        }
+        String input = chars.input;
+        int start = chars.index;
+        int end = chars.bufferEnd;
+        int chunks = Math.min(ForkJoinPool.getCommonPoolParallelism() * 4, (end - start) / MIN_CHUNK_SIZE);
+        if (chunks < 2) {
+            return lex();
+        }
+
+        List<Callable<List<Token>>> tasks = new ArrayList<>();
+        int chunkStart = start;
+        for (int i = 1; i <= chunks && chunkStart < end; i++) {
+            int chunkEnd = i == chunks ? end : nextBoundary(input, Math.max(chunkStart, start + (end - start) / chunks * i), end);
+            Lexer lexer = new Lexer(input, chunkStart, chunkEnd, engine);
+            tasks.add(() -> {
+                List<Token> tokens = new ArrayList<>();
+                while (lexer.hasNext()) {
+                    tokens.add(lexer.lexToken());
+                }
+                return tokens;
+            });
+            chunkStart = chunkEnd;
+        }
+
+        List<Token> tokens = new ArrayList<>();
+        for (Future<List<Token>> result : ForkJoinPool.commonPool().invokeAll(tasks)) {
+            try {
+                tokens.addAll(result.get());
+            } catch (ExecutionException ex) {
+                if (ex.getCause() instanceof ParseException pe) {
+                    System.out.println(pe.getMessage() + " at index: " + pe.getIndex());
+                    throw pe;
+                }
+                throw new RuntimeException(ex.getCause());
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException(ex);
+            }
+        }
+        chars.index = end;
+        return tokens;
+    }
+
+    /**
+     * Returns the index after the first newline at or past the given index
+     * which is safe to split on, or the end of the input.
+     */
+    private static int nextBoundary(String input, int index, int end) {
+        for (int i = Math.max(index, 1); i < end; i++) {
+            if (input.charAt(i) == '\n' && input.charAt(i - 1) != '\'') {
+                return i + 1;
+            }
+        }
+        return end;
+    }
+
+    /**
+     * Lexes the input in the same way as {@link #lex()}, but stores the tokens
+     * in a packed {@link TokenBuffer} instead of as {@link Token} objects. The
+     * input must be a string so literals can be recovered from it later.
+     */
+    public TokenBuffer lexPacked() {
+        if (chars.input == null) {
+            throw new IllegalStateException("Packed tokens require the input as a string.");
+        }
+        TokenBuffer tokens = new TokenBuffer(chars.input);
+        while (hasNext()) {
+            int start = chars.index;
+            try {
+                if (engine == Engine.TABLE) {
+                    Token.Type type = DfaLexer.scan(chars);
+                    boolean symbol = type == Token.Type.IDENTIFIER || type == Token.Type.OPERATOR;
+                    tokens.add(type, start, chars.index - start, symbol ? chars.symbol() : null);
+                    chars.skip();
+                } else {
+                    Token token = lexToken();
+                    boolean symbol = token.getType() == Token.Type.IDENTIFIER || token.getType() == Token.Type.OPERATOR;
+                    tokens.add(token.getType(), start, chars.index - start, symbol ? token.getLiteral() : null);
+                }
+            } catch (ParseException ex) {
+                if (engine == Engine.TABLE) {
+                    chars.reset();
+                }
+                System.out.println(ex.getMessage() + " at index: " + ex.getIndex());
+                throw ex;
+            }
+        }
+        return tokens;
+    }
+
+    /**
+     * Skips whitespace and returns true if another token remains. Together
+     * with {@link #next()} this lets the parser pull tokens on demand instead
+     * of lexing the whole input up front.
+     */
+    @Override
+    public boolean hasNext() {
+        while (chars.has(0)) {
             switch (chars.get(0)) {
                 case ' ', '\b', '\n', '\r', '\t': chars.reset(); break;
-                default:
-                    try {
-                        Token token = lexToken();
-                        tokens.add(token);
-                        break;
-                    } catch (ParseException ex) {
-                        System.out.println(ex.getMessage() + " at index: " + ex.getIndex());
-                        throw ex;
-                    }
+                default: return true;
             }
         }
-        return tokens;
+        return false;
+    }
+
+    /**
+     * Skips whitespace and lexes the next token.
+     */
+    @Override
+    public Token next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        try {
+            return lexToken();
+        } catch (ParseException ex) {
+            System.out.println(ex.getMessage() + " at index: " + ex.getIndex());
+            throw ex;
+        }
     }
 
     /**
@@ -56,6 +228,15 @@ public final class Lexer {
      * by {@link #lex()}
      */
     public Token lexToken() {
+        if (engine == Engine.TABLE) {
+            try {
+                return DfaLexer.lexToken(chars);
+            } catch (ParseException ex) {
+                chars.reset();
+                throw ex;
+            }
+        }
+
         String[] identifiers = {"(@|[A-Za-z])"};
         String[] decimals = {"-?", "(0|[1-9])", "[0-9]*", "\\.", "[0-9]+"};
         String[] numbers = {"-?", "(0|[1-9])", "\\.", "[0-9]+"};
@@ -288,23 +469,64 @@ public final class Lexer {
      * You should rely on peek/match for state management in nearly all cases.
      * The only field you need to access is {@link #index} for any {@link
      * ParseException} which is thrown.
+     *
+     * The input is either a {@link String} held in memory (of which the stream
+     * may cover a range), or a {@link Reader} read through a sliding buffer.
+     * The buffer only retains the token being matched and the lookahead past
+     * it, so memory use does not grow with the size of the input. Indices are
+     * always absolute offsets into the input.
      */
     public static final class CharStream {
 
+        private static final int BUFFER_SIZE = 8192;
+
         private final String input;
+        private final Reader reader;
+        private final Symbols symbols = new Symbols();
+        private char[] buffer;
+        private int bufferStart = 0;
+        private int bufferEnd = 0;
+        private boolean eof = false;
         private int index = 0;
         private int length = 0;
 
         public CharStream(String input) {
+            this(input, 0, input.length());
+        }
+
+        /**
+         * Creates a char stream over {@code input[start, end)}, such as one
+         * chunk of a parallel lex. Indices remain absolute into the input.
+         */
+        public CharStream(String input, int start, int end) {
             this.input = input;
+            this.reader = null;
+            this.index = start;
+            this.bufferEnd = end;
+        }
+
+        public CharStream(Reader reader) {
+            this.input = null;
+            this.reader = reader;
+            this.buffer = new char[BUFFER_SIZE];
+        }
+
+        public int getIndex() {
+            return index;
         }
 
         public boolean has(int offset) {
-            return index + offset < input.length();
+            if (input != null) {
+                return index + offset < bufferEnd;
+            }
+            return index + offset < bufferEnd || fill(index + offset);
         }
 
         public char get(int offset) {
-            return input.charAt(index + offset);
+            if (input != null) {
+                return input.charAt(index + offset);
+            }
+            return buffer[index + offset - bufferStart];
         }
 
         // Used to advance CharStream when matching a Token
@@ -326,8 +548,57 @@ public final class Lexer {
 
         public Token emit(Token.Type type) {
             int start = index - length;
+            String literal;
+            if (type == Token.Type.IDENTIFIER || type == Token.Type.OPERATOR) {
+                literal = symbol();
+            } else if (input != null) {
+                literal = input.substring(start, index);
+            } else {
+                literal = new String(buffer, start - bufferStart, length);
+            }
             skip();
-            return new Token(type, input.substring(start, index), start);
+            return new Token(type, literal, start);
+        }
+
+        /**
+         * Returns the current match interned through the stream's {@link
+         * Symbols} table, which is used for identifiers and operators.
+         */
+        public String symbol() {
+            int start = index - length;
+            if (input != null) {
+                return symbols.intern(input, start, index);
+            }
+            return symbols.intern(buffer, start - bufferStart, index - bufferStart);
+        }
+
+        /**
+         * Reads from the reader until the absolute position is buffered or the
+         * input is exhausted, discarding everything before the current token.
+         * Returns true if the position is available.
+         */
+        private boolean fill(int position) {
+            while (position >= bufferEnd && !eof) {
+                int keep = index - length;
+                if (keep > bufferStart) {
+                    System.arraycopy(buffer, keep - bufferStart, buffer, 0, bufferEnd - keep);
+                    bufferStart = keep;
+                }
+                if (bufferEnd - bufferStart == buffer.length) {
+                    buffer = Arrays.copyOf(buffer, buffer.length * 2);
+                }
+                try {
+                    int read = reader.read(buffer, bufferEnd - bufferStart, buffer.length - (bufferEnd - bufferStart));
+                    if (read < 0) {
+                        eof = true;
+                    } else {
+                        bufferEnd += read;
+                    }
+                } catch (IOException ex) {
+                    throw new UncheckedIOException(ex);
+                }
+            }
+            return position < bufferEnd;
         }
 
     }
@@ -0,0 +1,467 @@
+package plc.project;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Simplifies a source after the {@link Analyzer}, giving a tree which the
+ * {@link Interpreter} and the {@link Generator} (or the Java it generates)
+ * evaluate the same as the original, only with less work:
+ *
+ *  - a binary expression of literals is folded into a literal of its value,
+ *    as evaluated by the interpreter, if the generated Java gives the same
+ *    value. So an Integer must fit in 32 bits (and not be a power, which
+ *    Java computes as a double), a Decimal must be exact in double
+ *    arithmetic, strings are never compared, neither Decimals nor nil are
+ *    concatenated, and no concatenation gives a quote, backslash or line
+ *    terminator (which the generator would print unescaped). One which
+ *    throws (as dividing by zero) is left to throw when it is evaluated.
+ *  - the identities {@code x + 0}, {@code 0 + x}, {@code x - 0},
+ *    {@code x * 1}, {@code 1 * x} and {@code x / 1} of Integers simplify to
+ *    x, as do {@code TRUE && x}, {@code x && TRUE}, {@code FALSE || x} and
+ *    {@code x || FALSE}, while {@code FALSE && x} and {@code TRUE || x},
+ *    which never evaluate x, simplify to the literal. Decimals keep their
+ *    identities, since the interpreter's result can differ in scale.
+ *  - a group is stripped unless it is an operand of a binary expression
+ *    and groups a binary expression itself, as its parentheses would then
+ *    change nothing.
+ *  - code which can't run is removed: the statements of a block after a
+ *    {@code RETURN}, {@code WHILE} loops whose condition is {@code FALSE},
+ *    and the branch of an {@code IF} its literal condition doesn't take. The
+ *    other branch replaces the {@code IF} if it declares no variables (so
+ *    that it has no scope of its own), and is otherwise kept as the only
+ *    branch of an {@code IF TRUE}.
+ *  - functions which can't be called from {@code main} (or the values of
+ *    globals), going by the calls left in the code which can run, are
+ *    removed.
+ *
+ * The tree is not modified: a node is copied (with the variables, functions
+ * and types the analyzer gave it) only if something within it changes.
+ */
+public final class Optimizer implements Ast.Visitor<Ast> {
+
+    private final Interpreter interpreter = new Interpreter(null);
+
+    /**
+     * The functions (by name and arity) called by the code which can run in
+     * each function, with the calls of globals under null.
+     */
+    private final Map<String, Set<String>> calls = new HashMap<>();
+    private String caller = null;
+
+    @Override
+    public Ast.Source visit(Ast.Source ast) {
+        List<Ast.Global> globals = visitAll(ast.getGlobals());
+        List<Ast.Function> functions = visitAll(ast.getFunctions());
+        // Functions are only called by name, so those which can be called are
+        // found from main through the calls of each
+        Set<String> reachable = new HashSet<>();
+        Deque<String> pending = new ArrayDeque<>(calls.getOrDefault(null, Set.of()));
+        pending.add("main/0");
+        while (!pending.isEmpty()) {
+            String name = pending.pop();
+            if (reachable.add(name)) {
+                pending.addAll(calls.getOrDefault(name, Set.of()));
+            }
+        }
+        List<Ast.Function> called = new ArrayList<>();
+        for (Ast.Function function : functions) {
+            if (reachable.contains(key(function.getName(), function.getParameters().size()))) {
+                called.add(function);
+            }
+        }
+        if (called.size() < functions.size()) {
+            functions = called;
+        }
+        if (globals == ast.getGlobals() && functions == ast.getFunctions()) {
+            return ast;
+        }
+        return new Ast.Source(globals, functions);
+    }
+
+    @Override
+    public Ast.Global visit(Ast.Global ast) {
+        Optional<Ast.Expression> value = visitOptional(ast.getValue());
+        if (value == ast.getValue()) {
+            return ast;
+        }
+        Ast.Global global = new Ast.Global(ast.getName(), ast.getTypeName(), ast.getMutable(), value);
+        global.setVariable(ast.getVariable());
+        return global;
+    }
+
+    @Override
+    public Ast.Function visit(Ast.Function ast) {
+        caller = key(ast.getName(), ast.getParameters().size());
+        List<Ast.Statement> statements = visitBlock(ast.getStatements());
+        caller = null;
+        if (statements == ast.getStatements()) {
+            return ast;
+        }
+        Ast.Function function = new Ast.Function(ast.getName(), ast.getParameters(), ast.getParameterTypeNames(), ast.getReturnTypeName(), statements);
+        function.setFunction(ast.getFunction());
+        return function;
+    }
+
+    @Override
+    public Ast.Statement visit(Ast.Statement.Expression ast) {
+        Ast.Expression expression = visitExpression(ast.getExpression());
+        return expression == ast.getExpression() ? ast : new Ast.Statement.Expression(expression);
+    }
+
+    @Override
+    public Ast.Statement visit(Ast.Statement.Declaration ast) {
+        Optional<Ast.Expression> value = visitOptional(ast.getValue());
+        if (value == ast.getValue()) {
+            return ast;
+        }
+        Ast.Statement.Declaration declaration = new Ast.Statement.Declaration(ast.getName(), ast.getTypeName(), value);
+        declaration.setVariable(ast.getVariable());
+        return declaration;
+    }
+
+    @Override
+    public Ast.Statement visit(Ast.Statement.Assignment ast) {
+        Ast.Expression receiver = (Ast.Expression) visit(ast.getReceiver());
+        Ast.Expression value = visitExpression(ast.getValue());
+        if (receiver == ast.getReceiver() && value == ast.getValue()) {
+            return ast;
+        }
+        return new Ast.Statement.Assignment(receiver, value);
+    }
+
+    @Override
+    public Ast.Statement visit(Ast.Statement.If ast) {
+        Ast.Expression condition = visitExpression(ast.getCondition());
+        if (condition instanceof Ast.Expression.Literal literal) {
+            // Only the branch taken is visited, so calls only it makes count
+            List<Ast.Statement> branch = visitBlock((Boolean) literal.getLiteral() ? ast.getThenStatements() : ast.getElseStatements());
+            if (ast.getCondition() == condition && branch == ast.getThenStatements() && ast.getElseStatements().isEmpty()) {
+                return ast;
+            }
+            Ast.Expression.Literal taken = new Ast.Expression.Literal(true);
+            taken.setType(Environment.Type.BOOLEAN);
+            return new Ast.Statement.If(taken, branch, List.of());
+        }
+        List<Ast.Statement> thenStatements = visitBlock(ast.getThenStatements());
+        List<Ast.Statement> elseStatements = visitBlock(ast.getElseStatements());
+        if (condition == ast.getCondition() && thenStatements == ast.getThenStatements() && elseStatements == ast.getElseStatements()) {
+            return ast;
+        }
+        return new Ast.Statement.If(condition, thenStatements, elseStatements);
+    }
+
+    @Override
+    public Ast.Statement visit(Ast.Statement.Switch ast) {
+        Ast.Expression condition = visitExpression(ast.getCondition());
+        List<Ast.Statement.Case> cases = visitAll(ast.getCases());
+        if (condition == ast.getCondition() && cases == ast.getCases()) {
+            return ast;
+        }
+        return new Ast.Statement.Switch(condition, cases);
+    }
+
+    @Override
+    public Ast.Statement.Case visit(Ast.Statement.Case ast) {
+        Optional<Ast.Expression> value = visitOptional(ast.getValue());
+        List<Ast.Statement> statements = visitBlock(ast.getStatements());
+        if (value == ast.getValue() && statements == ast.getStatements()) {
+            return ast;
+        }
+        return new Ast.Statement.Case(value, statements);
+    }
+
+    @Override
+    public Ast.Statement visit(Ast.Statement.While ast) {
+        Ast.Expression condition = visitExpression(ast.getCondition());
+        if (Boolean.FALSE.equals(condition instanceof Ast.Expression.Literal literal ? literal.getLiteral() : null)) {
+            // Removed by visitBlock, without its statements being visited
+            return new Ast.Statement.While(condition, ast.getStatements());
+        }
+        List<Ast.Statement> statements = visitBlock(ast.getStatements());
+        if (condition == ast.getCondition() && statements == ast.getStatements()) {
+            return ast;
+        }
+        return new Ast.Statement.While(condition, statements);
+    }
+
+    @Override
+    public Ast.Statement visit(Ast.Statement.Return ast) {
+        Ast.Expression value = visitExpression(ast.getValue());
+        return value == ast.getValue() ? ast : new Ast.Statement.Return(value);
+    }
+
+    @Override
+    public Ast.Expression visit(Ast.Expression.Literal ast) {
+        return ast;
+    }
+
+    /**
+     * Returns the group, or its expression if that isn't a binary expression
+     * (as once it is simplified), in which case the group is redundant.
+     */
+    @Override
+    public Ast.Expression visit(Ast.Expression.Group ast) {
+        Ast.Expression expression = (Ast.Expression) visit(ast.getExpression());
+        if (!(expression instanceof Ast.Expression.Binary)) {
+            return expression;
+        } else if (expression == ast.getExpression()) {
+            return ast;
+        }
+        Ast.Expression.Group group = new Ast.Expression.Group(expression);
+        group.setType(ast.getType());
+        return group;
+    }
+
+    @Override
+    public Ast.Expression visit(Ast.Expression.Binary ast) {
+        Ast.Expression left = (Ast.Expression) visit(ast.getLeft());
+        Ast.Expression right = (Ast.Expression) visit(ast.getRight());
+        Ast.Expression.Binary binary = ast;
+        if (left != ast.getLeft() || right != ast.getRight()) {
+            binary = new Ast.Expression.Binary(ast.getOperator(), left, right);
+            binary.setType(ast.getType());
+        }
+        if (left instanceof Ast.Expression.Literal l && right instanceof Ast.Expression.Literal r) {
+            return fold(binary, l.getLiteral(), r.getLiteral());
+        }
+        return simplify(binary);
+    }
+
+    @Override
+    public Ast.Expression visit(Ast.Expression.Access ast) {
+        if (ast.getOffset().isEmpty()) {
+            return ast;
+        }
+        Optional<Ast.Expression> offset = visitOptional(ast.getOffset());
+        if (offset == ast.getOffset()) {
+            return ast;
+        }
+        Ast.Expression.Access access = new Ast.Expression.Access(offset, ast.getName());
+        access.setVariable(ast.getVariable());
+        return access;
+    }
+
+    @Override
+    public Ast.Expression visit(Ast.Expression.Function ast) {
+        calls.computeIfAbsent(caller, name -> new HashSet<>()).add(key(ast.getName(), ast.getArguments().size()));
+        List<Ast.Expression> arguments = visitExpressions(ast.getArguments());
+        if (arguments == ast.getArguments()) {
+            return ast;
+        }
+        Ast.Expression.Function function = new Ast.Expression.Function(ast.getName(), arguments);
+        function.setFunction(ast.getFunction());
+        return function;
+    }
+
+    @Override
+    public Ast.Expression visit(Ast.Expression.PlcList ast) {
+        List<Ast.Expression> values = visitExpressions(ast.getValues());
+        if (values == ast.getValues()) {
+            return ast;
+        }
+        Ast.Expression.PlcList list = new Ast.Expression.PlcList(values);
+        list.setType(ast.getType());
+        return list;
+    }
+
+    /**
+     * Returns the literal value of a binary expression of literals if the
+     * interpreter and generated Java agree on it, or the expression if not.
+     */
+    private Ast.Expression fold(Ast.Expression.Binary ast, Object left, Object right) {
+        Object value;
+        try {
+            value = interpreter.visit(ast).getValue();
+        } catch (RuntimeException ex) {
+            return ast;
+        }
+        if (!agrees(ast.getOperator(), left, right, value)) {
+            return simplify(ast);
+        }
+        Ast.Expression.Literal literal = new Ast.Expression.Literal(value);
+        literal.setType(ast.getType());
+        return literal;
+    }
+
+    /**
+     * Returns true if the generated Java gives the same value as the
+     * interpreter for an operation of literals.
+     */
+    private static boolean agrees(String operator, Object left, Object right, Object value) {
+        if (value instanceof BigInteger integer) {
+            // Java's int arithmetic only differs when it overflows
+            return !operator.equals("^") && integer.bitLength() < 32;
+        } else if (value instanceof BigDecimal decimal) {
+            double l = ((BigDecimal) left).doubleValue();
+            double r = ((BigDecimal) right).doubleValue();
+            double result = switch (operator) {
+                case "+" -> l + r;
+                case "-" -> l - r;
+                case "*" -> l * r;
+                case "/" -> l / r;
+                default -> Double.NaN;
+            };
+            return decimal.doubleValue() == result;
+        } else if (value instanceof Boolean) {
+            if (left instanceof String || right instanceof String) {
+                return false;
+            } else if (left instanceof BigDecimal l && right instanceof BigDecimal r) {
+                boolean result = switch (operator) {
+                    case "<" -> l.doubleValue() < r.doubleValue();
+                    case ">" -> l.doubleValue() > r.doubleValue();
+                    case "==" -> l.doubleValue() == r.doubleValue();
+                    case "!=" -> l.doubleValue() != r.doubleValue();
+                    default -> !(Boolean) value;
+                };
+                return result == (Boolean) value;
+            }
+            return true;
+        } else if (value instanceof String string) {
+            // Java prints a Decimal as a double, and nil as null, and the
+            // generator prints a string literal without escaping it
+            return !(left instanceof BigDecimal || right instanceof BigDecimal || left == null || right == null)
+                    && string.chars().noneMatch(c -> c == '"' || c == '\\' || c == '\n' || c == '\r');
+        }
+        return false;
+    }
+
+    /**
+     * Simplifies the identities of a binary expression with a literal
+     * operand, returning the expression itself if there are none.
+     */
+    private static Ast.Expression simplify(Ast.Expression.Binary ast) {
+        Object left = ast.getLeft() instanceof Ast.Expression.Literal literal ? literal.getLiteral() : null;
+        Object right = ast.getRight() instanceof Ast.Expression.Literal literal ? literal.getLiteral() : null;
+        if (ast.getType().equals(Environment.Type.INTEGER)) {
+            switch (ast.getOperator()) {
+                case "+":
+                    if (BigInteger.ZERO.equals(left)) {
+                        return ast.getRight();
+                    } else if (BigInteger.ZERO.equals(right)) {
+                        return ast.getLeft();
+                    }
+                    break;
+                case "-":
+                    if (BigInteger.ZERO.equals(right)) {
+                        return ast.getLeft();
+                    }
+                    break;
+                case "*":
+                    if (BigInteger.ONE.equals(left)) {
+                        return ast.getRight();
+                    } else if (BigInteger.ONE.equals(right)) {
+                        return ast.getLeft();
+                    }
+                    break;
+                case "/":
+                    if (BigInteger.ONE.equals(right)) {
+                        return ast.getLeft();
+                    }
+                    break;
+            }
+        } else if (ast.getOperator().equals("&&") || ast.getOperator().equals("||")) {
+            // The value which decides the operation: FALSE for &&, TRUE for ||
+            Boolean decides = ast.getOperator().equals("||");
+            if (decides.equals(left)) {
+                return ast.getLeft();
+            } else if (Boolean.valueOf(!decides).equals(left)) {
+                return ast.getRight();
+            } else if (Boolean.valueOf(!decides).equals(right)) {
+                return ast.getLeft();
+            }
+        }
+        return ast;
+    }
+
+    /**
+     * Visits the statements of a block, leaving out those which can't run,
+     * and returns the same list if none change.
+     */
+    private List<Ast.Statement> visitBlock(List<Ast.Statement> statements) {
+        List<Ast.Statement> block = new ArrayList<>();
+        boolean changed = false;
+        for (Ast.Statement statement : statements) {
+            if (!block.isEmpty() && block.getLast() instanceof Ast.Statement.Return) {
+                changed = true;
+                break;
+            }
+            Ast.Statement visited = (Ast.Statement) visit(statement);
+            changed |= visited != statement;
+            if (visited instanceof Ast.Statement.While loop && loop.getCondition() instanceof Ast.Expression.Literal literal
+                    && Boolean.FALSE.equals(literal.getLiteral())) {
+                continue;
+            } else if (visited instanceof Ast.Statement.If branch && branch.getCondition() instanceof Ast.Expression.Literal
+                    && !Resolver.declares(branch.getThenStatements())) {
+                block.addAll(branch.getThenStatements());
+                changed = true;
+            } else {
+                block.add(visited);
+            }
+        }
+        return changed ? block : statements;
+    }
+
+    private static String key(String name, int arity) {
+        return name + "/" + arity;
+    }
+
+    /**
+     * Visits an expression which isn't an operand, and so needs no group.
+     */
+    private Ast.Expression visitExpression(Ast.Expression ast) {
+        Ast.Expression expression = (Ast.Expression) visit(ast);
+        return expression instanceof Ast.Expression.Group group ? group.getExpression() : expression;
+    }
+
+    private Optional<Ast.Expression> visitOptional(Optional<Ast.Expression> ast) {
+        if (ast.isEmpty()) {
+            return ast;
+        }
+        Ast.Expression expression = visitExpression(ast.get());
+        return expression == ast.get() ? ast : Optional.of(expression);
+    }
+
+    private List<Ast.Expression> visitExpressions(List<Ast.Expression> asts) {
+        List<Ast.Expression> expressions = null;
+        for (int i = 0; i < asts.size(); i++) {
+            Ast.Expression expression = visitExpression(asts.get(i));
+            if (expression != asts.get(i) && expressions == null) {
+                expressions = new ArrayList<>(asts.subList(0, i));
+            }
+            if (expressions != null) {
+                expressions.add(expression);
+            }
+        }
+        return expressions != null ? expressions : asts;
+    }
+
+    /**
+     * Visits each node of a list, returning the same list if none of them
+     * change.
+     */
+    @SuppressWarnings("unchecked")
+    private <T extends Ast> List<T> visitAll(List<T> asts) {
+        List<T> visited = null;
+        for (int i = 0; i < asts.size(); i++) {
+            T ast = (T) visit(asts.get(i));
+            if (ast != asts.get(i) && visited == null) {
+                visited = new ArrayList<>(asts.subList(0, i));
+            }
+            if (visited != null) {
+                visited.add(ast);
+            }
+        }
+        return visited != null ? visited : asts;
+    }
+
+}
@@ -3,9 +3,15 @@ package plc.project;
 import javax.swing.text.html.Option;
 import java.math.BigDecimal;
 import java.math.BigInteger;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Optional;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
 
 /**
  * The parser takes the sequence of tokens emitted by the lexer and turns that
@@ -22,35 +28,167 @@ import java.util.Optional;
  */
 public final class Parser {
 
+    private static final int LOGICAL = 1;
+    private static final int COMPARISON = 2;
+    private static final int ADDITIVE = 3;
+    private static final int MULTIPLICATIVE = 4;
+
+    private static final Map<String, Integer> BINDING_POWERS = Map.ofEntries(
+            Map.entry("&&", LOGICAL), Map.entry("||", LOGICAL),
+            Map.entry("<", COMPARISON), Map.entry(">", COMPARISON),
+            Map.entry("==", COMPARISON), Map.entry("!=", COMPARISON),
+            Map.entry("+", ADDITIVE), Map.entry("-", ADDITIVE),
+            Map.entry("*", MULTIPLICATIVE), Map.entry("/", MULTIPLICATIVE),
+            Map.entry("^", MULTIPLICATIVE));
+
+    private static final String[] OPERAND_ERRORS = {
+            null, "Invalid logic", "Invalid comparison", "Invalid operand", "Invalid operand"};
+
+    private static final int MIN_FUNCTIONS_PER_TASK = 16;
+
     private final TokenStream tokens;
+    private boolean lazy = false;
 
     public Parser(List<Token> tokens) {
         this.tokens = new TokenStream(tokens);
     }
 
+    /**
+     * Parses in pull mode, lexing tokens only as the parser reaches them so
+     * the full token list is never built.
+     */
+    public Parser(Lexer lexer) {
+        this.tokens = new TokenStream(lexer, true);
+    }
+
+    /**
+     * Parses from a packed token buffer, materializing literals only for the
+     * tokens the parser reads them from.
+     */
+    public Parser(TokenBuffer tokens) {
+        this.tokens = new TokenStream(tokens);
+    }
+
+    private Parser(TokenStream tokens) {
+        this.tokens = tokens;
+    }
+
+    /**
+     * Parses tokens starting at the given index, see {@link IncrementalParser}.
+     */
+    Parser(List<Token> tokens, int index) {
+        this.tokens = new TokenStream(tokens);
+        this.tokens.index = index;
+    }
+
+    /**
+     * Returns the index of the next token to be parsed.
+     */
+    int getIndex() {
+        return tokens.index;
+    }
+
     /**
      * Parses the {@code source} rule.
      */
     public Ast.Source parseSource() throws ParseException {
+        return parseSource(null);
+    }
+
+    /**
+     * Parses the {@code source} rule, parsing function bodies in parallel.
+     *
+     * A pre-scan finds the {@code FUN} tokens outside of any block by counting
+     * {@code DO}/{@code SWITCH} against {@code END}, and the functions starting
+     * there are parsed ahead of time on the common pool. The source is then
+     * parsed as usual, taking each function from the parse ahead when it
+     * reaches its start. A function that failed to parse ahead is parsed again
+     * in place, so errors are exactly those of {@link #parseSource()}.
+     *
+     * This needs random access to the tokens, so a parser lexing on demand
+     * (or a source with few functions) is parsed sequentially instead.
+     */
+    public Ast.Source parseSourceParallel() throws ParseException {
+        if (!tokens.isIndexed()) {
+            return parseSource();
+        }
+        List<Integer> starts = new ArrayList<>();
+        int depth = 0;
+        for (int i = 0; tokens.has(i); i++) {
+            if (tokens.hasLiteral(i, "FUN")) {
+                if (depth == 0) {
+                    starts.add(tokens.index + i);
+                }
+            } else if (tokens.hasLiteral(i, "DO") || tokens.hasLiteral(i, "SWITCH")) {
+                depth++;
+            } else if (tokens.hasLiteral(i, "END") && depth > 0) {
+                depth--;
+            }
+        }
+        int tasks = Math.min(ForkJoinPool.getCommonPoolParallelism() * 4, starts.size() / MIN_FUNCTIONS_PER_TASK);
+        if (tasks < 2) {
+            return parseSource();
+        }
+
+        ParsedFunctions parsed = new ParsedFunctions(starts, tasks);
+        try {
+            return parseSource(parsed);
+        } finally {
+            parsed.cancel();
+        }
+    }
+
+    /**
+     * Parses the {@code source} rule, leaving each function body unparsed
+     * until its statements are first needed (such as when the function is
+     * invoked or generated). Parsing a function only finds the {@code END}
+     * closing its body, so syntax errors within a body are reported when the
+     * body is parsed instead. A body whose end can't be found that way (such
+     * as one missing a semicolon before its {@code END}) is parsed right away.
+     *
+     * As with {@link #parseSourceParallel()}, this needs random access to the
+     * tokens and a parser lexing on demand parses every body right away.
+     */
+    public Ast.Source parseSourceLazy() throws ParseException {
+        lazy = tokens.isIndexed();
+        return parseSource();
+    }
+
+    private Ast.Source parseSource(ParsedFunctions parsed) throws ParseException {
         List< Ast.Global> globals = new ArrayList<>();
         List<Ast.Function> functions = new ArrayList<>();
 
         // Have to parse all globals first before functions
         boolean flag = false;
-        while (tokens.has(1)) {
-            if (peek("LIST") || peek("VAR") || peek("VAL")) {
-                if (!flag) {
-                    Ast.Global gl = parseGlobal();
-                    globals.add(gl);
-                } else {
-                    throw new ParseException("Function Before Global", getErrIndex());
+        try {
+            while (tokens.has(1)) {
+                if (!peek("LIST") && !peek("VAR") && !peek("VAL") && !peek("FUN")) {
+                    throw new ParseException("Invalid global or function", tokens.get(0).getIndex());
+                }
+                if (peek("LIST") || peek("VAR") || peek("VAL")) {
+                    if (!flag) {
+                        Ast.Global gl = parseGlobal();
+                        globals.add(gl);
+                    } else {
+                        throw new ParseException("Function Before Global", getErrIndex());
+                    }
+                }
+                if (peek("FUN")) {
+                    Ast.Function fn = parsed != null ? parsed.take() : null;
+                    if (fn == null) {
+                        fn = parseFunction();
+                    }
+                    functions.add(fn);
+                    flag = true;
                 }
             }
-            if (peek("FUN")) {
-                Ast.Function fn = parseFunction();
-                functions.add(fn);
-                flag = true;
-            }
+        } catch (ParseException ex) {
+            // A lexing error cuts the token stream short, which is the actual
+            // cause of whatever parse error followed it
+            throw tokens.lexError != null ? tokens.lexError : ex;
+        }
+        if (tokens.lexError != null) {
+            throw tokens.lexError;
         }
 
         return new Ast.Source(globals, functions);
@@ -208,11 +346,136 @@ public final class Parser {
         if (!match("DO")) {
             throw new ParseException("Missing DO", getErrIndex());
         }
+        if (lazy) {
+            int end = findBlockEnd();
+            if (end != -1) {
+                int start = tokens.index;
+                tokens.index = end;
+                return new Ast.Function(name, params, paramTypeNames, returnTypeName, () -> parseLazyBlock(start, end));
+            }
+        }
         List<Ast.Statement> statements = parseBlock();
 
         return new Ast.Function(name, params, paramTypeNames, returnTypeName, statements);
     }
 
+    /**
+     * Returns the index after the {@code END} closing the current block, or -1
+     * if the block is not closed (or is malformed before its end, which is
+     * left for the eager parse to report).
+     *
+     * Keywords are only identifiers to the lexer, so as in the parser they
+     * are only counted where they would be parsed as such: {@code IF},
+     * {@code WHILE}, {@code SWITCH}, {@code ELSE}, {@code CASE},
+     * {@code DEFAULT} and {@code END} at the start of a statement, and the
+     * {@code DO}, {@code CASE}, {@code DEFAULT} or {@code :} which ends a
+     * condition. The scan gives up at the start of another function, which
+     * can't be within a valid body.
+     */
+    private int findBlockEnd() {
+        // The blocks being scanned, innermost last, as the keyword they
+        // started with (DO for the function's own block)
+        List<String> blocks = new ArrayList<>();
+        blocks.add("DO");
+        int i = 0;
+        while (tokens.has(i)) {
+            String block = blocks.getLast();
+            if (startsFunction(i)) {
+                return -1;
+            } else if (block.equals("CASE") && tokens.hasLiteral(i, "CASE")) {
+                i = findConditionEnd(i + 1, ":", ":");
+                if (i == -1) {
+                    return -1;
+                }
+                i++;
+            } else if (block.equals("CASE") && tokens.hasLiteral(i, "DEFAULT")) {
+                blocks.set(blocks.size() - 1, "DEFAULT");
+                i++;
+            } else if (tokens.hasLiteral(i, "END")) {
+                if (block.equals("CASE")) {
+                    return -1;
+                }
+                i++;
+                // An ELSE after the END of a then block still starts its else
+                // block, as in parseIfStatement
+                if (block.equals("IF") && tokens.has(i) && tokens.hasLiteral(i, "ELSE")) {
+                    blocks.set(blocks.size() - 1, "ELSE");
+                    i++;
+                    continue;
+                }
+                blocks.removeLast();
+                if (blocks.isEmpty()) {
+                    return tokens.index + i;
+                }
+            } else if (block.equals("IF") && tokens.hasLiteral(i, "ELSE")) {
+                blocks.set(blocks.size() - 1, "ELSE");
+                i++;
+            } else if (tokens.hasLiteral(i, "IF") || tokens.hasLiteral(i, "WHILE")) {
+                blocks.add(tokens.hasLiteral(i, "IF") ? "IF" : "DO");
+                i = findConditionEnd(i + 1, "DO", "DO");
+                if (i == -1) {
+                    return -1;
+                }
+                i++;
+            } else if (tokens.hasLiteral(i, "SWITCH")) {
+                // Left at the first CASE or DEFAULT
+                blocks.add("CASE");
+                i = findConditionEnd(i + 1, "CASE", "DEFAULT");
+                if (i == -1) {
+                    return -1;
+                }
+            } else {
+                while (tokens.has(i) && !tokens.hasLiteral(i, ";")) {
+                    if (startsFunction(i)) {
+                        return -1;
+                    }
+                    i++;
+                }
+                i++;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the offset of the first token from {@code start} which ends a
+     * condition starting there, being either literal and following the end of
+     * an expression (so not its first token, an operator or an opening
+     * bracket), or -1 if there is none before the end of a statement.
+     */
+    private int findConditionEnd(int start, String first, String second) {
+        for (int i = start; tokens.has(i); i++) {
+            if (tokens.hasLiteral(i, ";") || startsFunction(i)) {
+                return -1;
+            } else if (i > start && (tokens.hasLiteral(i, first) || tokens.hasLiteral(i, second))) {
+                if (tokens.getType(i - 1) != Token.Type.OPERATOR || tokens.hasLiteral(i - 1, ")") || tokens.hasLiteral(i - 1, "]")) {
+                    return i;
+                }
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns true if the tokens at the offset are {@code FUN name (}, which
+     * only starts a function, as two identifiers are never adjacent in a
+     * statement.
+     */
+    private boolean startsFunction(int offset) {
+        return tokens.hasLiteral(offset, "FUN") && tokens.has(offset + 2)
+                && tokens.getType(offset + 1) == Token.Type.IDENTIFIER && tokens.hasLiteral(offset + 2, "(");
+    }
+
+    private List<Ast.Statement> parseLazyBlock(int start, int end) {
+        Parser parser = new Parser(tokens.fork(start));
+        int index = parser.tokens.get(0).getIndex();
+        List<Ast.Statement> statements = parser.parseBlock();
+        if (parser.tokens.index != end) {
+            throw new ParseException("Invalid function body", index);
+        }
+        return statements;
+    }
+
     /**
      * Parses the {@code block} rule. This method should only be called if the
      * preceding token indicates the opening a block of statements.
@@ -451,80 +714,58 @@ public final class Parser {
      * Parses the {@code logical-expression} rule.
      */
     public Ast.Expression parseLogicalExpression() throws ParseException {
-        Ast.Expression expr = parseComparisonExpression();
-
-        while (match("&&") || match("||")) {
-            // Binary takes type String as operator
-            String operator = tokens.get(-1).getLiteral();
-            try {
-                Ast.Expression right = parseComparisonExpression();
-                expr = new Ast.Expression.Binary(operator, expr, right);
-            } catch (ParseException ex) {
-                int errIndex = tokens.get(-1).getIndex() + 1;
-                throw new ParseException("Invalid logic", errIndex);
-            }
-        }
-
-        return expr;
+        return parseBinaryExpression(LOGICAL);
     }
 
     /**
      * Parses the {@code comparison-expression} rule.
      */
     public Ast.Expression parseComparisonExpression() throws ParseException {
-        Ast.Expression expr = parseAdditiveExpression();
-
-        while (match("<") || match(">") || match("==") || match("!=")) {
-            // Same as Logical and so forth
-            String operator = tokens.get(-1).getLiteral();
-            try {
-                Ast.Expression right = parseAdditiveExpression();
-                expr = new Ast.Expression.Binary(operator, expr, right);
-            } catch (ParseException ex) {
-                int errIndex = tokens.get(-1).getIndex() + 1;
-                throw new ParseException("Invalid comparison", errIndex);
-            }
-        }
-
-        return expr;
+        return parseBinaryExpression(COMPARISON);
     }
 
     /**
      * Parses the {@code additive-expression} rule.
      */
     public Ast.Expression parseAdditiveExpression() throws ParseException {
-        Ast.Expression expr = parseMultiplicativeExpression();
-
-        while (match("+") || match("-")) {
-            String operator = tokens.get(-1).getLiteral();
-            try {
-                Ast.Expression right = parseMultiplicativeExpression();
-                expr = new Ast.Expression.Binary(operator, expr, right);
-            } catch (ParseException ex) {
-                int errIndex = tokens.get(-1).getIndex() + 1;
-                throw new ParseException("Invalid operand", errIndex);
-            }
-        }
-
-        return expr;
+        return parseBinaryExpression(ADDITIVE);
     }
 
     /**
      * Parses the {@code multiplicative-expression} rule.
      */
     public Ast.Expression parseMultiplicativeExpression() throws ParseException {
+        return parseBinaryExpression(MULTIPLICATIVE);
+    }
+
+    /**
+     * Parses a chain of binary operators binding at least as tightly as the
+     * given level using precedence climbing, so each operand is parsed with
+     * one call per operator instead of descending through every level. All
+     * operators are left associative, so the right operand only takes
+     * operators of a strictly higher level.
+     *
+     * A failure in a right operand is reported with the message of the
+     * operator's level, and since every enclosing operator rethrows in turn
+     * the outermost one wins, as with one method per level.
+     */
+    private Ast.Expression parseBinaryExpression(int level) throws ParseException {
         Ast.Expression expr = parsePrimaryExpression();
 
-        while (match("*") || match("/") || match("^")) {
-            String operator = tokens.get(-1).getLiteral();
+        while (tokens.has(0) && tokens.getType(0) == Token.Type.OPERATOR) {
+            String operator = tokens.getLiteral(0);
+            Integer power = BINDING_POWERS.get(operator);
+            if (power == null || power < level) {
+                break;
+            }
+            tokens.advance();
             try {
-                Ast.Expression right = parsePrimaryExpression();
+                Ast.Expression right = parseBinaryExpression(power + 1);
                 expr = new Ast.Expression.Binary(operator, expr, right);
             } catch (ParseException ex) {
                 int errIndex = tokens.get(-1).getIndex() + 1;
-                throw new ParseException("Invalid operand", errIndex);
+                throw new ParseException(OPERAND_ERRORS[power], errIndex);
             }
-
         }
 
         return expr;
@@ -651,9 +892,7 @@ public final class Parser {
         if (match(Token.Type.IDENTIFIER)) {
             return new Ast.Expression.Access(Optional.empty(), tokens.get(-1).getLiteral());
         }
-        if (tokens.tokens.size() == 1) {
-            throw new ParseException("Invalid expression", tokens.get(0).getIndex());
-        } else if (tokens.has(0)) {
+        if (tokens.has(0)) {
             throw new ParseException("Invalid expression", tokens.get(0).getIndex());
         }
         throw new ParseException("Invalid expression", getErrIndex());
@@ -688,11 +927,11 @@ public final class Parser {
             if (!tokens.has(i)) {
                 return false;
             } else if (patterns[i] instanceof Token.Type) {
-                if (patterns[i] != tokens.get(i).getType()) {
+                if (patterns[i] != tokens.getType(i)) {
                     return false;
                 }
             } else if (patterns[i] instanceof String) {
-                if (!patterns[i].equals(tokens.get(i).getLiteral())) {
+                if (!tokens.hasLiteral(i, (String) patterns[i])) {
                     return false;
                 }
             } else {
@@ -716,27 +955,214 @@ public final class Parser {
         return peek;
     }
 
+    /**
+     * Functions parsed ahead of time by {@link #parseSourceParallel()}, keyed
+     * by the index of their {@code FUN} token. Consecutive functions are
+     * grouped into one task each, and a group is only waited on once the
+     * parser reaches one of its functions.
+     */
+    private final class ParsedFunctions {
+
+        private final int[] starts;
+        private final int[] ends;
+        private final Ast.Function[] functions;
+        private final List<Future<?>> tasks = new ArrayList<>();
+        private final int groupSize;
+
+        private ParsedFunctions(List<Integer> starts, int groups) {
+            this.starts = starts.stream().mapToInt(Integer::intValue).toArray();
+            this.ends = new int[this.starts.length];
+            this.functions = new Ast.Function[this.starts.length];
+            this.groupSize = (this.starts.length + groups - 1) / groups;
+            for (int first = 0; first < this.starts.length; first += groupSize) {
+                int from = first;
+                int to = Math.min(first + groupSize, this.starts.length);
+                tasks.add(ForkJoinPool.commonPool().submit(() -> parse(from, to)));
+            }
+        }
+
+        private void parse(int from, int to) {
+            for (int i = from; i < to; i++) {
+                Parser parser = new Parser(tokens.fork(starts[i]));
+                try {
+                    functions[i] = parser.parseFunction();
+                    ends[i] = parser.tokens.index;
+                } catch (RuntimeException ex) {
+                    // Left to be parsed again in place, which reports the error
+                }
+            }
+        }
+
+        /**
+         * Returns the function starting at the current token and advances
+         * past it, or null if it was not parsed ahead.
+         */
+        private Ast.Function take() {
+            int i = Arrays.binarySearch(starts, tokens.index);
+            if (i < 0) {
+                return null;
+            }
+            try {
+                tasks.get(i / groupSize).get();
+            } catch (ExecutionException ex) {
+                return null;
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException(ex);
+            }
+            if (functions[i] != null) {
+                tokens.index = ends[i];
+            }
+            return functions[i];
+        }
+
+        private void cancel() {
+            for (Future<?> task : tasks) {
+                task.cancel(false);
+            }
+        }
+
+    }
+
+    /**
+     * Provides the parser's view of the tokens, which are either held in a
+     * list or a packed {@link TokenBuffer}, or pulled from an iterator as they
+     * are needed.
+     *
+     * Pulled tokens are kept in a small ring buffer around the current index.
+     * The window covers the tokens the parser looks back at through {@code
+     * get(-1)} and {@code get(-2)} as well as the deepest {@link
+     * #peek(Object...)}. When lexing on demand, a {@link ParseException} from
+     * the lexer ends the stream and is kept in {@link #lexError} to be rethrown
+     * by the parser.
+     *
+     * Tokens from the lexer have their identifiers and operators interned (see
+     * {@link Symbols}), so keywords and operators are matched by identity
+     * against the parser's string constants instead of with equals.
+     */
     private static final class TokenStream {
 
-        private final List<Token> tokens;
+        private static final int CAPACITY = 8;
+        private static final int LOOKBEHIND = 2;
+
+        private final TokenBuffer buffer;
+        private final List<Token> list;
+        private final Iterator<Token> source;
+        private final Token[] window;
+        private final boolean interned;
         private int index = 0;
+        private int end = 0;
+        private ParseException lexError = null;
+
+        private TokenStream(List<Token> list) {
+            this.buffer = null;
+            this.list = list;
+            this.source = null;
+            this.window = null;
+            this.interned = false;
+        }
+
+        private TokenStream(Iterator<Token> source, boolean interned) {
+            this.buffer = null;
+            this.list = null;
+            this.source = source;
+            this.window = new Token[CAPACITY];
+            this.interned = interned;
+        }
 
-        private TokenStream(List<Token> tokens) {
-            this.tokens = tokens;
+        private TokenStream(TokenBuffer buffer) {
+            this.buffer = buffer;
+            this.list = null;
+            this.source = null;
+            this.window = null;
+            this.interned = true;
+        }
+
+        /**
+         * Returns true if tokens can be read at any index, as opposed to being
+         * pulled from an iterator.
+         */
+        public boolean isIndexed() {
+            return source == null;
+        }
+
+        /**
+         * Returns a new stream over the same tokens starting at the given
+         * index, which requires the stream to be indexed.
+         */
+        public TokenStream fork(int index) {
+            TokenStream fork = buffer != null ? new TokenStream(buffer) : new TokenStream(list);
+            fork.index = index;
+            return fork;
         }
 
         /**
          * Returns true if there is a token at index + offset.
          */
         public boolean has(int offset) {
-            return index + offset < tokens.size();
+            int position = index + offset;
+            if (buffer != null) {
+                return position < buffer.size();
+            } else if (list != null) {
+                return position < list.size();
+            }
+            if (position - index >= CAPACITY - LOOKBEHIND) {
+                throw new AssertionError("Lookahead exceeds token window: " + offset);
+            }
+            while (position >= end && lexError == null && source.hasNext()) {
+                try {
+                    window[end % CAPACITY] = source.next();
+                    end++;
+                } catch (ParseException ex) {
+                    lexError = ex;
+                }
+            }
+            return position < end;
         }
 
         /**
          * Gets the token at index + offset.
          */
         public Token get(int offset) {
-            return tokens.get(index + offset);
+            int position = index + offset;
+            if (buffer != null) {
+                return buffer.get(position);
+            } else if (list != null) {
+                return list.get(position);
+            }
+            if (position < 0 || position < end - CAPACITY || !has(offset)) {
+                throw new IndexOutOfBoundsException("Index " + position + " out of bounds for token window");
+            }
+            return window[position % CAPACITY];
+        }
+
+        /**
+         * Gets the type of the token at index + offset.
+         */
+        public Token.Type getType(int offset) {
+            return buffer != null ? buffer.getType(index + offset) : get(offset).getType();
+        }
+
+        /**
+         * Gets the literal of the token at index + offset.
+         */
+        public String getLiteral(int offset) {
+            return buffer != null ? buffer.getLiteral(index + offset) : get(offset).getLiteral();
+        }
+
+        /**
+         * Returns true if the literal of the token at index + offset is equal
+         * to the given keyword or operator, which must be a string constant.
+         */
+        public boolean hasLiteral(int offset, String literal) {
+            if (buffer != null) {
+                return buffer.isSymbol(index + offset, literal);
+            }
+            Token token = get(offset);
+            if (interned && (token.getType() == Token.Type.IDENTIFIER || token.getType() == Token.Type.OPERATOR)) {
+                return token.getLiteral() == literal;
+            }
+            return literal.equals(token.getLiteral());
         }
 
         /**
@@ -0,0 +1,248 @@
+package plc.project;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Marks the functions of a source which are pure (see
+ * {@link Ast.Function#isPure()}), so that the {@link Interpreter} can memoize
+ * them. A function is pure if it:
+ *
+ *  - only reads and assigns its parameters and the variables it declares
+ *    (which are in scope where they are used, as by the {@link Analyzer}),
+ *    so it neither reads nor writes a global or a variable of its caller
+ *  - assigns no element of a list
+ *  - only calls pure functions of the source (so never {@code print})
+ *
+ * Since functions are dynamically scoped, a parameter is bound to a variable
+ * of the caller's scope with its name if there is one, rather than to an
+ * argument. The result of a pure function therefore also depends on those
+ * variables, which are given by {@link Ast.Function#getCallerNames()}: its
+ * own parameters, and those of the functions it calls which are not in scope
+ * at the call.
+ */
+public final class PurityAnalyzer implements Ast.Visitor<Void> {
+
+    private final Map<String, Ast.Function> functions = new HashMap<>();
+    private final Map<Ast.Function, Summary> summaries = new IdentityHashMap<>();
+    private final List<Set<String>> scopes = new ArrayList<>();
+    private Summary summary;
+
+    @Override
+    public Void visit(Ast.Source ast) {
+        for (Ast.Function function : ast.getFunctions()) {
+            functions.put(function.getName() + "/" + function.getParameters().size(), function);
+        }
+        ast.getFunctions().forEach(this::visit);
+        // Functions are pure until found to call an impure one, and the caller
+        // names grow to include those of the functions called (recursion
+        // included), so both are iterated until they stop changing
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (Summary summary : summaries.values()) {
+                if (!summary.pure) {
+                    continue;
+                }
+                for (Call call : summary.calls) {
+                    Summary callee = summaries.get(call.function);
+                    if (!callee.pure) {
+                        summary.pure = false;
+                        changed = true;
+                        break;
+                    }
+                    changed |= summary.callerNames.addAll(call.unbound);
+                    changed |= summary.callerNames.addAll(callee.callerNames);
+                }
+            }
+        }
+        summaries.forEach((function, summary) -> function.setCallerNames(summary.pure ? Set.copyOf(summary.callerNames) : null));
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Global ast) {
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Function ast) {
+        summary = new Summary();
+        summary.callerNames.addAll(ast.getParameters());
+        summaries.put(ast, summary);
+        scopes.clear();
+        scopes.add(new HashSet<>(ast.getParameters()));
+        ast.getStatements().forEach(this::visit);
+        scopes.clear();
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Statement.Expression ast) {
+        visit(ast.getExpression());
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Statement.Declaration ast) {
+        ast.getValue().ifPresent(this::visit);
+        scopes.getLast().add(ast.getName());
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Statement.Assignment ast) {
+        // The receiver is checked when the assignment is evaluated, so any
+        // other than a local variable just leaves the function impure
+        if (!(ast.getReceiver() instanceof Ast.Expression.Access receiver)
+                || receiver.getOffset().isPresent() || !isLocal(receiver.getName())) {
+            summary.pure = false;
+        }
+        visit(ast.getValue());
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Statement.If ast) {
+        visit(ast.getCondition());
+        visitBlock(ast.getThenStatements());
+        visitBlock(ast.getElseStatements());
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Statement.Switch ast) {
+        visit(ast.getCondition());
+        ast.getCases().forEach(this::visit);
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Statement.Case ast) {
+        // Cases run in the enclosing block, but a case's declarations are only
+        // certain to have run within it
+        ast.getValue().ifPresent(this::visit);
+        visitBlock(ast.getStatements());
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Statement.While ast) {
+        visit(ast.getCondition());
+        visitBlock(ast.getStatements());
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Statement.Return ast) {
+        visit(ast.getValue());
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Expression.Literal ast) {
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Expression.Group ast) {
+        visit(ast.getExpression());
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Expression.Binary ast) {
+        visit(ast.getLeft());
+        visit(ast.getRight());
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Expression.Access ast) {
+        ast.getOffset().ifPresent(this::visit);
+        if (!isLocal(ast.getName())) {
+            summary.pure = false;
+        }
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Expression.Function ast) {
+        ast.getArguments().forEach(this::visit);
+        Ast.Function function = functions.get(ast.getName() + "/" + ast.getArguments().size());
+        if (function == null) {
+            summary.pure = false;
+            return null;
+        }
+        Set<String> unbound = new HashSet<>();
+        for (String parameter : function.getParameters()) {
+            if (!isLocal(parameter)) {
+                unbound.add(parameter);
+            }
+        }
+        summary.calls.add(new Call(function, unbound));
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Expression.PlcList ast) {
+        ast.getValues().forEach(this::visit);
+        return null;
+    }
+
+    private void visitBlock(List<Ast.Statement> statements) {
+        scopes.add(new HashSet<>());
+        try {
+            statements.forEach(this::visit);
+        } finally {
+            scopes.removeLast();
+        }
+    }
+
+    /**
+     * Returns true if the name is a parameter or a variable declared by the
+     * function which is in scope.
+     */
+    private boolean isLocal(String name) {
+        for (Set<String> scope : scopes) {
+            if (scope.contains(name)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * What is known of a function from its own statements.
+     */
+    private static final class Summary {
+
+        private boolean pure = true;
+        private final Set<String> callerNames = new LinkedHashSet<>();
+        private final List<Call> calls = new ArrayList<>();
+
+    }
+
+    /**
+     * A call of a function of the source, with the names of its parameters
+     * which are not in scope at the call.
+     */
+    private static final class Call {
+
+        private final Ast.Function function;
+        private final Set<String> unbound;
+
+        private Call(Ast.Function function, Set<String> unbound) {
+            this.function = function;
+            this.unbound = unbound;
+        }
+
+    }
+
+}
@@ -0,0 +1,197 @@
+package plc.project;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Resolves the variables of each function to slots in the frames of its
+ * blocks, walking the scopes the {@link Interpreter} creates: one for the
+ * function (its parameters and top-level declarations) and one for each
+ * {@code IF} or {@code WHILE} block which {@link #declares declares}
+ * variables, as a scope without variables is never observed and so is
+ * skipped (which is recorded on the block's statement). Every {@link Ast.Statement.Declaration}
+ * is given a slot in its block's frame and every {@link Ast.Expression.Access}
+ * (including the receiver of an {@link Ast.Statement.Assignment}) that refers
+ * to one is given its (depth, slot), where the depth counts blocks out from
+ * the access.
+ *
+ * Only variables declared within the function are resolved. Since functions
+ * are invoked in the caller's scope, any other variable (such as a global) is
+ * still looked up by name. The parameters of a function take the first slots
+ * of its frame, in order.
+ */
+public final class Resolver implements Ast.Visitor<Void> {
+
+    private final List<Map<String, Integer>> frames = new ArrayList<>();
+
+    @Override
+    public Void visit(Ast.Source ast) {
+        ast.getFunctions().forEach(this::visit);
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Global ast) {
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Function ast) {
+        frames.clear();
+        frames.add(new HashMap<>());
+        ast.getParameters().forEach(this::declare);
+        ast.getStatements().forEach(this::visit);
+        frames.clear();
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Statement.Expression ast) {
+        visit(ast.getExpression());
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Statement.Declaration ast) {
+        ast.getValue().ifPresent(this::visit);
+        if (!frames.isEmpty()) {
+            ast.setSlot(declare(ast.getName()));
+        }
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Statement.Assignment ast) {
+        visit(ast.getReceiver());
+        visit(ast.getValue());
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Statement.If ast) {
+        visit(ast.getCondition());
+        ast.setScoped(declares(ast.getThenStatements()), declares(ast.getElseStatements()));
+        // Only one branch runs in the block's frame, so both number from zero
+        visitBlock(ast.getThenStatements(), ast.isThenScoped());
+        visitBlock(ast.getElseStatements(), ast.isElseScoped());
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Statement.Switch ast) {
+        // Cases run in the enclosing block
+        visit(ast.getCondition());
+        ast.getCases().forEach(this::visit);
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Statement.Case ast) {
+        ast.getValue().ifPresent(this::visit);
+        ast.getStatements().forEach(this::visit);
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Statement.While ast) {
+        visit(ast.getCondition());
+        ast.setScoped(declares(ast.getStatements()));
+        visitBlock(ast.getStatements(), ast.isScoped());
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Statement.Return ast) {
+        visit(ast.getValue());
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Expression.Literal ast) {
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Expression.Group ast) {
+        visit(ast.getExpression());
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Expression.Binary ast) {
+        visit(ast.getLeft());
+        visit(ast.getRight());
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Expression.Access ast) {
+        ast.getOffset().ifPresent(this::visit);
+        for (int depth = 0; depth < frames.size(); depth++) {
+            Integer slot = frames.get(frames.size() - 1 - depth).get(ast.getName());
+            if (slot != null) {
+                ast.setSlot(depth, slot);
+                break;
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Expression.Function ast) {
+        ast.getArguments().forEach(this::visit);
+        return null;
+    }
+
+    @Override
+    public Void visit(Ast.Expression.PlcList ast) {
+        ast.getValues().forEach(this::visit);
+        return null;
+    }
+
+    private void visitBlock(List<Ast.Statement> statements, boolean scoped) {
+        if (frames.isEmpty() || !scoped) {
+            statements.forEach(this::visit);
+            return;
+        }
+        frames.add(new HashMap<>());
+        try {
+            statements.forEach(this::visit);
+        } finally {
+            frames.removeLast();
+        }
+    }
+
+    /**
+     * Returns true if the statements of a block declare a variable in its
+     * scope, including in the cases of a {@code SWITCH} (which run in the
+     * enclosing block).
+     */
+    static boolean declares(List<Ast.Statement> statements) {
+        for (Ast.Statement statement : statements) {
+            if (statement instanceof Ast.Statement.Declaration) {
+                return true;
+            } else if (statement instanceof Ast.Statement.Switch switchStatement) {
+                for (Ast.Statement.Case c : switchStatement.getCases()) {
+                    if (declares(c.getStatements())) {
+                        return true;
+                    }
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Returns the slot of the name in the innermost frame, adding it if it is
+     * not yet declared there. A name declared again in the same frame (such as
+     * in two cases of a switch) keeps its slot.
+     */
+    private int declare(String name) {
+        Map<String, Integer> frame = frames.getLast();
+        return frame.computeIfAbsent(name, n -> frame.size());
+    }
+
+}
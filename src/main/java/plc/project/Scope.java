@@ -1,6 +1,7 @@
 package plc.project;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -8,12 +9,23 @@ import java.util.function.Function;
 
 public final class Scope {
 
+    private static final Environment.Variable[] NO_SLOTS = new Environment.Variable[0];
+
     private final Scope parent;
+    private final Scope root;
     private final Map<String, Environment.Variable> variables = new HashMap<>();
     private final Map<String, Environment.Function> functions = new HashMap<>();
+    private Environment.Variable[] slots = NO_SLOTS;
+
+    /**
+     * The number of functions defined in the scopes within this one, if it is
+     * a root, see {@link #getFunctionDefinitions()}.
+     */
+    private int functionDefinitions = 0;
 
     public Scope(Scope parent) {
         this.parent = parent;
+        this.root = parent == null ? this : parent.root;
     }
 
     public Scope getParent() {
@@ -34,22 +46,88 @@ public final class Scope {
         }
     }
 
+    /**
+     * Defines a variable which is also stored in the given slot of this
+     * scope's frame, as assigned by the {@link Resolver}.
+     */
+    public Environment.Variable defineVariable(int slot, String name, boolean mutable, Environment.PlcObject value) {
+        Environment.Variable variable = defineVariable(name, name, Environment.Type.ANY, mutable, value);
+        if (slot >= slots.length) {
+            slots = Arrays.copyOf(slots, Math.max(slot + 1, 2 * slots.length));
+        }
+        slots[slot] = variable;
+        return variable;
+    }
+
+    /**
+     * Looks up a resolved variable in the frame of the scope {@code depth}
+     * levels up. If its declaration has not run there yet, the variable is
+     * looked up by name as it would have been without resolution.
+     */
+    public Environment.Variable lookupVariable(int depth, int slot, String name) {
+        Scope scope = this;
+        for (int i = 0; i < depth; i++) {
+            scope = scope.parent;
+        }
+        Environment.Variable variable = slot < scope.slots.length ? scope.slots[slot] : null;
+        return variable != null ? variable : lookupVariable(name);
+    }
+
+    /**
+     * Returns true if a variable with the name is defined in this scope or
+     * one around it, so that {@link #lookupVariable(String)} would find it.
+     */
+    public boolean isDefined(String name) {
+        for (Scope scope = this; scope != null; scope = scope.parent) {
+            if (scope.variables.containsKey(name)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     public Environment.Variable lookupVariable(String name) {
-        if (variables.containsKey(name)) {
-            return variables.get(name);
-        } else if (parent != null) {
-            return parent.lookupVariable(name);
-        } else {
-            throw new RuntimeException("The variable " + name + " is not defined in this scope.");
+        for (Scope scope = this; scope != null; scope = scope.parent) {
+            Environment.Variable variable = scope.variables.get(name);
+            if (variable != null) {
+                return variable;
+            }
+        }
+        throw new RuntimeException("The variable " + name + " is not defined in this scope.");
+    }
+
+    /**
+     * Returns a scope in {@code outer} with the variables (and functions) of
+     * this scope and those around it up to outer, as they are found from this
+     * scope, or outer itself if there are none. Once the scopes up to outer
+     * can only be seen from the new scope, it replaces them, so that their
+     * variables are looked up through one scope however many there were.
+     */
+    public Scope collapse(Scope outer) {
+        Scope collapsed = new Scope(outer);
+        for (Scope scope = this; scope != outer; scope = scope.parent) {
+            scope.variables.forEach(collapsed.variables::putIfAbsent);
+            scope.functions.forEach(collapsed.functions::putIfAbsent);
         }
+        return collapsed.variables.isEmpty() && collapsed.functions.isEmpty() ? outer : collapsed;
     }
 
-    public void defineFunction(String name, int arity, Function<List<Environment.PlcObject>, Environment.PlcObject> function) {
+    /**
+     * Removes the variables and functions defined in this scope, so that it
+     * can be reused for another run of its block.
+     */
+    public void clear() {
+        variables.clear();
+        functions.clear();
+        Arrays.fill(slots, null);
+    }
+
+    public Environment.Function defineFunction(String name, int arity, Function<List<Environment.PlcObject>, Environment.PlcObject> function) {
         List<Environment.Type> parameterTypes = new ArrayList<>();
         for (int i = 0; i < arity; i++) {
             parameterTypes.add(Environment.Type.ANY);
         }
-        defineFunction(name, name, parameterTypes, Environment.Type.ANY, function);
+        return defineFunction(name, name, parameterTypes, Environment.Type.ANY, function);
     }
 
     public Environment.Function defineFunction(String name, String jvmName, List<Environment.Type> parameterTypes, Environment.Type returnType, java.util.function.Function<List<Environment.PlcObject>, Environment.PlcObject> function) {
@@ -58,18 +136,30 @@ public final class Scope {
         } else {
             Environment.Function func = new Environment.Function(name, jvmName, parameterTypes, returnType, function);
             functions.put(func.getName() + "/" + func.getParameterTypes().size(), func);
+            root.functionDefinitions++;
             return func;
         }
     }
 
+    /**
+     * Returns the number of functions defined so far in the scopes sharing
+     * this scope's root (the outermost scope around it). A cached lookup of a
+     * function from any of them is valid for as long as this is unchanged,
+     * since only a new definition can shadow the function it found.
+     */
+    public int getFunctionDefinitions() {
+        return root.functionDefinitions;
+    }
+
     public Environment.Function lookupFunction(String name, int arity) {
-        if (functions.containsKey(name + "/" + arity)) {
-            return functions.get(name + "/" + arity);
-        } else if (parent != null) {
-            return parent.lookupFunction(name, arity);
-        } else {
-            throw new RuntimeException("The function " + name + "/" + arity + " is not defined in this scope.");
+        String key = name + "/" + arity;
+        for (Scope scope = this; scope != null; scope = scope.parent) {
+            Environment.Function function = scope.functions.get(key);
+            if (function != null) {
+                return function;
+            }
         }
+        throw new RuntimeException("The function " + key + " is not defined in this scope.");
     }
 
     @Override
@@ -0,0 +1,101 @@
+package plc.project;
+
+/**
+ * Interns identifiers and operators as they are lexed. Every symbol is
+ * returned as the canonical {@link String#intern()} instance, which is the
+ * same instance as a string constant with the same contents. Keywords can
+ * therefore be matched by identity against constants such as {@code "FUN"},
+ * and names flowing into the AST and {@link Scope} maps share one instance
+ * (and one cached hash code).
+ *
+ * Lookups hash the characters in place, so a symbol that has been seen before
+ * is found without allocating a substring. A table is not thread safe; each
+ * {@link Lexer.CharStream} owns its own.
+ */
+public final class Symbols {
+
+    private String[] entries = new String[256];
+    private int[] hashes = new int[256];
+    private int size = 0;
+
+    /**
+     * Returns the interned symbol for {@code input[start, end)}.
+     */
+    public String intern(String input, int start, int end) {
+        int hash = 0;
+        for (int i = start; i < end; i++) {
+            hash = 31 * hash + input.charAt(i);
+        }
+        int mask = entries.length - 1;
+        for (int slot = mix(hash) & mask; entries[slot] != null; slot = (slot + 1) & mask) {
+            String entry = entries[slot];
+            if (hashes[slot] == hash && entry.length() == end - start && input.startsWith(entry, start)) {
+                return entry;
+            }
+        }
+        return insert(input.substring(start, end).intern(), hash);
+    }
+
+    /**
+     * Returns the interned symbol for {@code buffer[start, end)}.
+     */
+    public String intern(char[] buffer, int start, int end) {
+        int hash = 0;
+        for (int i = start; i < end; i++) {
+            hash = 31 * hash + buffer[i];
+        }
+        int mask = entries.length - 1;
+        for (int slot = mix(hash) & mask; entries[slot] != null; slot = (slot + 1) & mask) {
+            String entry = entries[slot];
+            if (hashes[slot] == hash && regionEquals(entry, buffer, start, end)) {
+                return entry;
+            }
+        }
+        return insert(new String(buffer, start, end - start).intern(), hash);
+    }
+
+    private String insert(String symbol, int hash) {
+        if (2 * (size + 1) > entries.length) {
+            resize();
+        }
+        int mask = entries.length - 1;
+        int slot = mix(hash) & mask;
+        while (entries[slot] != null) {
+            slot = (slot + 1) & mask;
+        }
+        entries[slot] = symbol;
+        hashes[slot] = hash;
+        size++;
+        return symbol;
+    }
+
+    private void resize() {
+        String[] oldEntries = entries;
+        int[] oldHashes = hashes;
+        entries = new String[oldEntries.length * 2];
+        hashes = new int[oldEntries.length * 2];
+        size = 0;
+        for (int i = 0; i < oldEntries.length; i++) {
+            if (oldEntries[i] != null) {
+                insert(oldEntries[i], oldHashes[i]);
+            }
+        }
+    }
+
+    private static boolean regionEquals(String entry, char[] buffer, int start, int end) {
+        if (entry.length() != end - start) {
+            return false;
+        }
+        for (int i = start; i < end; i++) {
+            if (entry.charAt(i - start) != buffer[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static int mix(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+
+}
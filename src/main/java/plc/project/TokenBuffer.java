@@ -0,0 +1,104 @@
+package plc.project;
+
+import java.util.Arrays;
+
+/**
+ * A compact, struct-of-arrays list of tokens produced by {@link
+ * Lexer#lexPacked()}. Each token is stored as a type ordinal, start offset and
+ * length in primitive arrays rather than as a {@link Token} object, and its
+ * literal is only materialized from the source when it is asked for.
+ * Identifiers and operators additionally keep their interned {@link Symbols}
+ * entry, so they never need a substring and keywords compare by identity.
+ *
+ * The parser reads a buffer directly (see {@link Parser#Parser(TokenBuffer)}),
+ * matching keywords and operators without allocating.
+ */
+public final class TokenBuffer {
+
+    private static final Token.Type[] TYPES = Token.Type.values();
+
+    private final String source;
+    private byte[] types = new byte[64];
+    private int[] starts = new int[64];
+    private int[] lengths = new int[64];
+    private String[] symbols = new String[64];
+    private int size = 0;
+
+    public TokenBuffer(String source) {
+        this.source = source;
+    }
+
+    /**
+     * Adds a token, where symbol is the interned literal of an identifier or
+     * operator and null for all other tokens.
+     */
+    public void add(Token.Type type, int start, int length, String symbol) {
+        if (size == types.length) {
+            types = Arrays.copyOf(types, size * 2);
+            starts = Arrays.copyOf(starts, size * 2);
+            lengths = Arrays.copyOf(lengths, size * 2);
+            symbols = Arrays.copyOf(symbols, size * 2);
+        }
+        types[size] = (byte) type.ordinal();
+        starts[size] = start;
+        lengths[size] = length;
+        symbols[size] = symbol;
+        size++;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public Token.Type getType(int index) {
+        return TYPES[types[checkIndex(index)]];
+    }
+
+    public int getIndex(int index) {
+        return starts[checkIndex(index)];
+    }
+
+    public int getLength(int index) {
+        return lengths[checkIndex(index)];
+    }
+
+    public String getLiteral(int index) {
+        if (symbols[checkIndex(index)] != null) {
+            return symbols[index];
+        }
+        return source.substring(starts[index], starts[index] + lengths[index]);
+    }
+
+    /**
+     * Returns true if the token is an identifier or operator whose interned
+     * literal is the given symbol, which must itself be interned (such as a
+     * string constant).
+     */
+    public boolean isSymbol(int index, String symbol) {
+        return symbols[checkIndex(index)] == symbol;
+    }
+
+    /**
+     * Returns true if the token's literal is equal to the given string, which
+     * is compared against the source in place.
+     */
+    public boolean hasLiteral(int index, String literal) {
+        return lengths[checkIndex(index)] == literal.length()
+                && source.startsWith(literal, starts[index]);
+    }
+
+    /**
+     * Materializes the token at the given index as a {@link Token}.
+     */
+    public Token get(int index) {
+        return new Token(getType(index), getLiteral(index), starts[index]);
+    }
+
+    private int checkIndex(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index " + index + " out of bounds for length " + size);
+        }
+        return index;
+    }
+
+}
@@ -0,0 +1,1059 @@
+package plc.project;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Runs a source as {@link Bytecode}, giving the same results as the tree
+ * walking {@link Interpreter} (see {@link Interpreter.Engine}).
+ *
+ * Globals and functions are defined in the interpreter's scope as usual, so
+ * they can be looked up (and functions invoked) afterwards. Functions are
+ * compiled on their first invocation, as the interpreter resolves them.
+ *
+ * Variables declared in functions live in frames, one for each function
+ * invocation and block (that declares variables) rather than a {@link Scope}.
+ * The frame of a function's invocation is entered from the caller's current
+ * frame, so that variables which are not declared in the function itself are
+ * looked up through the caller's frames (as functions are dynamically scoped)
+ * and then in the scope the machine was entered from.
+ *
+ * Integers which fit in a long are held unboxed, as a {@link #LONG} marker in
+ * the stack or a frame with the value in a parallel array, so that arithmetic
+ * on them does not allocate. Variables of the scope the machine was entered
+ * from are likewise held in {@link #cells} while it runs, and only written
+ * back to the scope when it stops or invokes a function defined outside of
+ * the source (which could see them).
+ *
+ * For {@link Interpreter.Engine#TIERED} execution, the functions are instead
+ * defined by the interpreter and {@link #register registered} here, and the
+ * interpreter {@link #invoke invokes} them once they are hot from its current
+ * scope. Any function of the source the machine calls is then compiled too.
+ */
+public final class VirtualMachine {
+
+    private final Scope scope;
+    private final Map<Environment.Function, Function> functions = new IdentityHashMap<>();
+    private final Map<Ast.Statement.While, Bytecode> loops = new IdentityHashMap<>();
+
+    /**
+     * Marks a value held unboxed, in the long array alongside the one holding
+     * it. A Long is never held boxed in the stack or a frame.
+     */
+    private static final Object LONG = new Object();
+
+    /**
+     * The variables of the base scope used since they were last written back
+     * (see {@link #flush()}), by name, each in a frame of one slot.
+     */
+    private final Map<String, Frame> cells = new HashMap<>();
+
+    /**
+     * The frame holding the variables of the function around the loop being
+     * finished, if the interpreter is finishing one (see {@link #loop}),
+     * which are written back along with the cells.
+     */
+    private Frame loop = null;
+
+    /**
+     * The current frame when a function defined outside of the source was
+     * invoked, from which any functions of the source it invokes are called.
+     */
+    private Frame frame = null;
+
+    /**
+     * The scope the machine was entered from, in which variables that are not
+     * in any frame are looked up.
+     */
+    private Scope base;
+    private int running = 0;
+    private final Interpreter.DecimalMode decimals;
+
+    public VirtualMachine(Scope scope) {
+        this(scope, Interpreter.DecimalMode.BIG_DECIMAL);
+    }
+
+    public VirtualMachine(Scope scope, Interpreter.DecimalMode decimals) {
+        this.scope = scope;
+        this.base = scope;
+        this.decimals = decimals;
+    }
+
+    public Scope getScope() {
+        return scope;
+    }
+
+    /**
+     * Defines the globals and functions of a source and returns the result of
+     * invoking {@code main/0}, as by {@link Interpreter#visit(Ast.Source)}.
+     */
+    public Environment.PlcObject run(Ast.Source ast) {
+        for (Ast.Global global : ast.getGlobals()) {
+            Object value = global.getValue().isPresent() ? execute(new BytecodeCompiler(decimals).compile(global), null, null) : Bytecode.NIL;
+            flush();
+            scope.defineVariable(global.getName(), global.getMutable(), wrap(value));
+        }
+        for (Ast.Function function : ast.getFunctions()) {
+            if (function.getName().equals("main") && !function.getParameters().isEmpty()) {
+                throw new RuntimeException("Invalid main arity");
+            }
+            Function compiled = new Function(function);
+            functions.put(scope.defineFunction(function.getName(), function.getParameters().size(),
+                    args -> enter(compiled, args, scope)), compiled);
+        }
+        return scope.lookupFunction("main", 0).invoke(Arrays.asList());
+    }
+
+    /**
+     * Registers a function of the source defined by the interpreter, so that
+     * the machine calls it (compiled) directly.
+     */
+    public void register(Environment.Function function, Ast.Function ast) {
+        functions.put(function, new Function(ast));
+    }
+
+    /**
+     * Returns whether a function is running, in which case any function it
+     * invokes (even through a function defined outside of the source) must be
+     * invoked through the machine to see its frames.
+     */
+    public boolean isRunning() {
+        return running > 0;
+    }
+
+    /**
+     * Invokes a registered function, from the given scope if the machine is
+     * not already running.
+     */
+    public Environment.PlcObject invoke(Environment.Function function, List<Environment.PlcObject> args, Scope caller) {
+        return enter(functions.get(function), args, caller);
+    }
+
+    /**
+     * Finishes a loop of a function the interpreter is running, from its
+     * current scope, returning the value of a {@code RETURN} in the loop or
+     * null if the loop finishes.
+     *
+     * The variables the loop uses from the scope are copied into a frame
+     * around it, so that the loop reads and assigns them by slot, and written
+     * back as the cells are.
+     */
+    public Environment.PlcObject loop(Ast.Statement.While ast, Scope caller) {
+        Bytecode bytecode = loops.computeIfAbsent(ast, loop -> new BytecodeCompiler(decimals).compile(loop));
+        Frame frame = this.frame;
+        Scope base = this.base;
+        Frame loop = this.loop;
+        if (running == 0) {
+            this.base = caller;
+        }
+        running++;
+        try {
+            Frame outer = new Frame(running > 1 ? frame : null, bytecode.getNames());
+            if (running == 1) {
+                for (int i = 0; i < outer.names.length; i++) {
+                    if (caller.isDefined(outer.names[i])) {
+                        outer.bind(i, caller.lookupVariable(outer.names[i]));
+                    }
+                }
+                this.loop = outer;
+            }
+            Object value = execute(bytecode, outer, outer);
+            return value == Bytecode.DONE ? null : wrap(value);
+        } finally {
+            flush();
+            running--;
+            this.frame = frame;
+            this.base = base;
+            this.loop = loop;
+        }
+    }
+
+    /**
+     * Calls a function of the source from the current frame if the machine is
+     * running (as when invoked by a function defined outside of the source),
+     * and otherwise from the given scope.
+     */
+    private Environment.PlcObject enter(Function function, List<Environment.PlcObject> args, Scope caller) {
+        Object[] arguments = new Object[args.size()];
+        for (int i = 0; i < arguments.length; i++) {
+            arguments[i] = Bytecode.fromValue(args.get(i).getValue());
+        }
+        Frame frame = this.frame;
+        Scope base = this.base;
+        if (running == 0) {
+            this.base = caller;
+        }
+        running++;
+        try {
+            return wrap(call(function, arguments, running > 1 ? frame : null));
+        } finally {
+            flush();
+            running--;
+            this.frame = frame;
+            this.base = base;
+        }
+    }
+
+    /**
+     * Calls a function of the source from the caller's frame, binding its
+     * parameters as the interpreter does: a parameter whose name is already
+     * visible is bound to that variable's value instead, without consuming an
+     * argument.
+     */
+    private Object call(Function function, Object[] arguments, Frame caller) {
+        Bytecode bytecode = compile(function);
+        return execute(bytecode, frame(bytecode, arguments, caller), caller);
+    }
+
+    private Bytecode compile(Function function) {
+        if (function.bytecode == null) {
+            function.bytecode = new BytecodeCompiler(decimals).compile(function.ast);
+        }
+        return function.bytecode;
+    }
+
+    /**
+     * Returns the frame of an invocation of the bytecode from the caller's
+     * frame, which is the caller's own if the function declares nothing.
+     */
+    private Frame frame(Bytecode bytecode, Object[] arguments, Frame caller) {
+        Frame frame = caller;
+        if (bytecode.getNames().length > 0) {
+            frame = new Frame(caller, bytecode.getNames());
+            String[] parameters = bytecode.getParameters();
+            int argument = 0;
+            for (int i = 0; i < parameters.length; i++) {
+                String name = parameters[i];
+                Object value = null;
+                boolean mutable = true;
+                for (Frame f = frame; f != null && value == null; f = f.parent) {
+                    int index = f.indexOf(name);
+                    if (index != -1) {
+                        value = f.get(index);
+                        mutable = f.immutable == null || !f.immutable[index];
+                    }
+                }
+                if (value == null) {
+                    if (cells.containsKey(name) || base.isDefined(name)) {
+                        Frame cell = cell(name);
+                        value = cell.get(0);
+                        mutable = cell.immutable == null;
+                    } else {
+                        value = arguments[argument++];
+                    }
+                }
+                frame.put(bytecode.getParameterSlots()[i], name, value);
+                if (!mutable) {
+                    if (frame.immutable == null) {
+                        frame.immutable = new boolean[frame.values.length];
+                    }
+                    frame.immutable[bytecode.getParameterSlots()[i]] = true;
+                }
+            }
+        }
+        return frame;
+    }
+
+    /**
+     * Runs bytecode in a frame, which is (or is within) the given outer frame
+     * it was called from.
+     */
+    private Object execute(Bytecode bytecode, Frame frame, Frame outer) {
+        int[] code = bytecode.getCode();
+        Object[] constants = bytecode.getConstants();
+        Object[] stack = new Object[bytecode.getMaxStack()];
+        long[] longs = new long[stack.length];
+        // The last frame of each block, reused when it is next entered from
+        // the same frame, as its variables can no longer be seen
+        Frame[] blocks = null;
+        int sp = 0;
+        int pc = 0;
+        try {
+            while (true) {
+                switch (code[pc++]) {
+                    case Bytecode.CONST:
+                        put(stack, longs, sp++, constants[code[pc++]]);
+                        break;
+                    case Bytecode.POP:
+                        sp--;
+                        break;
+                    case Bytecode.LOAD: {
+                        String name = (String) constants[code[pc + 2]];
+                        Frame f = declared(frame, code[pc], code[pc + 1]);
+                        int index = f != null ? code[pc + 1] : (f = lookup(frame, name)).indexOf(name);
+                        stack[sp] = f.values[index];
+                        longs[sp++] = f.longs[index];
+                        pc += 3;
+                        break;
+                    }
+                    case Bytecode.STORE: {
+                        String name = (String) constants[code[pc + 2]];
+                        Frame f = declared(frame, code[pc], code[pc + 1]);
+                        int index = f != null ? code[pc + 1] : (f = lookup(frame, name)).indexOf(name);
+                        sp--;
+                        f.set(index, stack[sp], longs[sp]);
+                        pc += 3;
+                        break;
+                    }
+                    case Bytecode.LOAD_INDEX: {
+                        int offset = offset(get(stack, longs, sp - 1));
+                        List<?> list = requireType(List.class, load(frame, code[pc], code[pc + 1], (String) constants[code[pc + 2]]));
+                        pc += 3;
+                        if (offset < 0 || offset > list.size() - 1) {
+                            throw new RuntimeException("Invalid offset");
+                        }
+                        put(stack, longs, sp - 1, Bytecode.fromValue(list.get(offset)));
+                        break;
+                    }
+                    case Bytecode.STORE_INDEX: {
+                        int offset = offset(get(stack, longs, --sp));
+                        List<Object> list = requireList(load(frame, code[pc], code[pc + 1], (String) constants[code[pc + 2]]));
+                        pc += 3;
+                        list.set(offset, Bytecode.toValue(get(stack, longs, --sp)));
+                        break;
+                    }
+                    case Bytecode.DECLARE:
+                        sp--;
+                        frame.define(code[pc], (String) constants[code[pc + 1]], stack[sp], longs[sp]);
+                        pc += 2;
+                        break;
+                    case Bytecode.ENTER: {
+                        if (blocks == null) {
+                            blocks = new Frame[bytecode.getBlocks()];
+                        }
+                        Frame block = blocks[code[pc + 1]];
+                        if (block != null && block.parent == frame) {
+                            Arrays.fill(block.values, null);
+                            frame = block;
+                        } else {
+                            frame = blocks[code[pc + 1]] = new Frame(frame, (String[]) constants[code[pc]]);
+                        }
+                        pc += 2;
+                        break;
+                    }
+                    case Bytecode.EXIT:
+                        frame = frame.parent;
+                        break;
+                    case Bytecode.JUMP:
+                        pc = code[pc];
+                        break;
+                    case Bytecode.JUMP_IF_FALSE:
+                        if (requireType(Boolean.class, get(stack, longs, --sp))) {
+                            pc++;
+                        } else {
+                            pc = code[pc];
+                        }
+                        break;
+                    case Bytecode.JUMP_IF_NUMBER:
+                        pc = stack[sp - 1] == LONG || isInteger(stack[sp - 1]) || stack[sp - 1] instanceof BigDecimal || stack[sp - 1] instanceof Double ? code[pc] : pc + 1;
+                        break;
+                    case Bytecode.JUMP_IF_STRING:
+                        pc = stack[sp - 1] instanceof String ? code[pc] : pc + 1;
+                        break;
+                    case Bytecode.CASE:
+                        sp--;
+                        if (stack[sp] == LONG ? stack[sp - 1] == LONG && longs[sp] == longs[sp - 1] : stack[sp].equals(stack[sp - 1])) {
+                            sp--;
+                            pc = code[pc];
+                        } else {
+                            pc++;
+                        }
+                        break;
+                    case Bytecode.JSR:
+                        stack[sp++] = pc + 1;
+                        pc = code[pc];
+                        break;
+                    case Bytecode.RET: {
+                        sp--;
+                        pc = (Integer) stack[sp - 1];
+                        stack[sp - 1] = stack[sp];
+                        longs[sp - 1] = longs[sp];
+                        break;
+                    }
+                    case Bytecode.FUNCTION: {
+                        int definitions = scope.getFunctionDefinitions();
+                        Environment.Function function = bytecode.getCallSite(code[pc + 2], definitions);
+                        if (function == null) {
+                            function = scope.lookupFunction((String) constants[code[pc]], code[pc + 1]);
+                            bytecode.setCallSite(code[pc + 2], function, definitions);
+                        }
+                        stack[sp++] = function;
+                        pc += 3;
+                        break;
+                    }
+                    case Bytecode.INVOKE: {
+                        int arity = code[pc++];
+                        Object[] arguments = arguments(stack, longs, sp - arity, sp);
+                        sp -= arity;
+                        put(stack, longs, sp - 1, invoke((Environment.Function) stack[sp - 1], arguments, frame));
+                        break;
+                    }
+                    case Bytecode.RETURN:
+                        return get(stack, longs, sp - 1);
+                    case Bytecode.TAIL_INVOKE: {
+                        // The function's result is returned, so a function of
+                        // the source is run in place of this one, keeping the
+                        // Java stack from growing. It still sees the frames of
+                        // this one, collapsed into one with those of any
+                        // function it replaced, so they don't grow either
+                        int arity = code[pc++];
+                        Object[] arguments = arguments(stack, longs, sp - arity, sp);
+                        sp -= arity;
+                        Function function = functions.get((Environment.Function) stack[sp - 1]);
+                        if (function == null) {
+                            return invoke((Environment.Function) stack[sp - 1], arguments, frame);
+                        }
+                        Bytecode callee = compile(function);
+                        frame = frame(callee, arguments, collapse(frame, outer));
+                        bytecode = callee;
+                        code = bytecode.getCode();
+                        constants = bytecode.getConstants();
+                        if (stack.length < bytecode.getMaxStack()) {
+                            stack = new Object[bytecode.getMaxStack()];
+                            longs = new long[stack.length];
+                        }
+                        blocks = null;
+                        sp = 0;
+                        pc = 0;
+                        break;
+                    }
+                    case Bytecode.LIST: {
+                        int length = code[pc++];
+                        List<Object> list = new ArrayList<>(length);
+                        for (int i = sp - length; i < sp; i++) {
+                            list.add(Bytecode.toValue(get(stack, longs, i)));
+                        }
+                        sp -= length;
+                        stack[sp++] = list;
+                        break;
+                    }
+                    case Bytecode.CHECK:
+                        if (stack[sp - 1] != LONG) {
+                            check(code[pc], stack[sp - 1]);
+                        }
+                        pc++;
+                        break;
+                    case Bytecode.AND:
+                        if (!(stack[sp - 1] instanceof Boolean)) {
+                            throw new RuntimeException("Invalid class type");
+                        } else if ((Boolean) stack[sp - 1]) {
+                            sp--;
+                            pc++;
+                        } else {
+                            pc = code[pc];
+                        }
+                        break;
+                    case Bytecode.OR:
+                        if (!(stack[sp - 1] instanceof Boolean)) {
+                            throw new RuntimeException("Invalid class type");
+                        } else if ((Boolean) stack[sp - 1]) {
+                            pc = code[pc];
+                        } else {
+                            sp--;
+                            pc++;
+                        }
+                        break;
+                    case Bytecode.BOOLEAN:
+                        requireType(Boolean.class, get(stack, longs, sp - 1));
+                        break;
+                    case Bytecode.THROW:
+                        throw ((Bytecode.Throw) constants[code[pc++]]).exception();
+                    // The operations on two longs are done in place, unless
+                    // the result overflows, and otherwise by binary()
+                    case Bytecode.EQUAL:
+                    case Bytecode.NOT_EQUAL:
+                        sp--;
+                        if (stack[sp] == LONG && stack[sp - 1] == LONG) {
+                            stack[sp - 1] = (longs[sp - 1] == longs[sp]) == (code[pc - 1] == Bytecode.EQUAL);
+                            break;
+                        }
+                        binary(code[pc - 1], stack, longs, sp);
+                        break;
+                    case Bytecode.LESS:
+                        sp--;
+                        if (stack[sp] == LONG && stack[sp - 1] == LONG) {
+                            stack[sp - 1] = longs[sp - 1] < longs[sp];
+                            break;
+                        }
+                        binary(Bytecode.LESS, stack, longs, sp);
+                        break;
+                    case Bytecode.GREATER:
+                        sp--;
+                        if (stack[sp] == LONG && stack[sp - 1] == LONG) {
+                            stack[sp - 1] = longs[sp - 1] > longs[sp];
+                            break;
+                        }
+                        binary(Bytecode.GREATER, stack, longs, sp);
+                        break;
+                    case Bytecode.ADD:
+                        sp--;
+                        if (stack[sp] == LONG && stack[sp - 1] == LONG) {
+                            long l = longs[sp - 1];
+                            long r = longs[sp];
+                            long result = l + r;
+                            if (((l ^ result) & (r ^ result)) >= 0) {
+                                longs[sp - 1] = result;
+                                break;
+                            }
+                        }
+                        binary(Bytecode.ADD, stack, longs, sp);
+                        break;
+                    case Bytecode.SUBTRACT:
+                        sp--;
+                        if (stack[sp] == LONG && stack[sp - 1] == LONG) {
+                            long l = longs[sp - 1];
+                            long r = longs[sp];
+                            long result = l - r;
+                            if (((l ^ r) & (l ^ result)) >= 0) {
+                                longs[sp - 1] = result;
+                                break;
+                            }
+                        }
+                        binary(Bytecode.SUBTRACT, stack, longs, sp);
+                        break;
+                    case Bytecode.MULTIPLY:
+                        sp--;
+                        if (stack[sp] == LONG && stack[sp - 1] == LONG) {
+                            long l = longs[sp - 1];
+                            long r = longs[sp];
+                            long result = l * r;
+                            if (Math.multiplyHigh(l, r) == result >> 63) {
+                                longs[sp - 1] = result;
+                                break;
+                            }
+                        }
+                        binary(Bytecode.MULTIPLY, stack, longs, sp);
+                        break;
+                    case Bytecode.DIVIDE:
+                        sp--;
+                        // Zero and the one overflowing quotient are left to BigInteger
+                        if (stack[sp] == LONG && stack[sp - 1] == LONG && longs[sp] != 0 && (longs[sp - 1] != Long.MIN_VALUE || longs[sp] != -1)) {
+                            longs[sp - 1] /= longs[sp];
+                            break;
+                        }
+                        binary(Bytecode.DIVIDE, stack, longs, sp);
+                        break;
+                    default:
+                        sp--;
+                        binary(code[pc - 1], stack, longs, sp);
+                        break;
+                }
+            }
+        } catch (RuntimeException ex) {
+            throw handle(bytecode, pc - 1, ex);
+        }
+    }
+
+    /**
+     * Passes an exception thrown at pc through the handlers covering it.
+     */
+    private static RuntimeException handle(Bytecode bytecode, int pc, RuntimeException ex) {
+        int[] handlers = bytecode.getHandlers();
+        for (int i = 0; i < handlers.length; i += 3) {
+            if (handlers[i] <= pc && pc < handlers[i + 1]) {
+                if (handlers[i + 2] == Bytecode.WRAP) {
+                    ex = new RuntimeException(ex);
+                } else if (ex instanceof ArithmeticException) {
+                    ex = new RuntimeException(ex.getMessage());
+                }
+            }
+        }
+        return ex;
+    }
+
+    private Object invoke(Environment.Function function, Object[] arguments, Frame frame) {
+        Function compiled = functions.get(function);
+        if (compiled != null) {
+            return call(compiled, arguments, frame);
+        }
+        List<Environment.PlcObject> args = new ArrayList<>(arguments.length);
+        for (Object argument : arguments) {
+            args.add(wrap(argument));
+        }
+        this.frame = frame;
+        flush();
+        Object value = Bytecode.fromValue(function.invoke(args).getValue());
+        if (loop != null) {
+            loop.reload();
+        }
+        return value;
+    }
+
+    /**
+     * Writes the variables of the base scope that were assigned back to it,
+     * and forgets the cells, as they could be changed (or shadowed) in it
+     * until the machine runs again. The frame of a loop's variables is kept,
+     * to be {@link Frame#reload() reloaded} instead.
+     */
+    private void flush() {
+        if (!cells.isEmpty()) {
+            for (Frame cell : cells.values()) {
+                cell.flush();
+            }
+            cells.clear();
+        }
+        if (loop != null) {
+            loop.flush();
+        }
+    }
+
+    /**
+     * Returns a frame in {@code outer} with the variables declared in the given
+     * frame and those around it up to outer, as they are found from it, or
+     * outer itself if there are none. Once the frames up to outer can only be
+     * seen from the new frame, it replaces them.
+     */
+    private static Frame collapse(Frame frame, Frame outer) {
+        List<String> names = new ArrayList<>();
+        List<Object> values = new ArrayList<>();
+        List<Boolean> immutable = new ArrayList<>();
+        for (Frame f = frame; f != outer; f = f.parent) {
+            for (int i = 0; i < f.names.length; i++) {
+                if (f.values[i] != null && !names.contains(f.names[i])) {
+                    names.add(f.names[i]);
+                    values.add(f.get(i));
+                    immutable.add(f.immutable != null && f.immutable[i]);
+                }
+            }
+        }
+        if (names.isEmpty()) {
+            return outer;
+        }
+        Frame collapsed = new Frame(outer, names.toArray(new String[0]));
+        for (int i = 0; i < collapsed.values.length; i++) {
+            put(collapsed.values, collapsed.longs, i, values.get(i));
+            if (immutable.get(i)) {
+                if (collapsed.immutable == null) {
+                    collapsed.immutable = new boolean[collapsed.values.length];
+                }
+                collapsed.immutable[i] = true;
+            }
+        }
+        return collapsed;
+    }
+
+    /**
+     * Returns the value of a variable, by its slot if it has been declared and
+     * otherwise by name.
+     */
+    private Object load(Frame frame, int depth, int slot, String name) {
+        Frame f = declared(frame, depth, slot);
+        return f != null ? f.get(slot) : (f = lookup(frame, name)).get(f.indexOf(name));
+    }
+
+    /**
+     * Returns the frame depth levels out from the given one if its slot has
+     * been declared, or null if it must be looked up by name.
+     */
+    private static Frame declared(Frame frame, int depth, int slot) {
+        if (depth == -1) {
+            return null;
+        }
+        for (int i = 0; i < depth; i++) {
+            frame = frame.parent;
+        }
+        return frame.values[slot] != null ? frame : null;
+    }
+
+    /**
+     * Returns the frame declaring a variable by name, which is its cell if it
+     * is declared in the base scope.
+     */
+    private Frame lookup(Frame frame, String name) {
+        for (Frame f = frame; f != null; f = f.parent) {
+            if (f.indexOf(name) != -1) {
+                return f;
+            }
+        }
+        return cell(name);
+    }
+
+    /**
+     * Returns the cell holding a variable of the base scope, which throws if
+     * it is not defined there.
+     */
+    private Frame cell(String name) {
+        Frame cell = cells.get(name);
+        if (cell == null) {
+            Environment.Variable variable = base.lookupVariable(name);
+            cell = new Frame(null, new String[] {name});
+            cell.bind(0, variable);
+            cells.put(name, cell);
+        }
+        return cell;
+    }
+
+    /**
+     * Holds a value at an index of the values (of the stack or a frame) and
+     * the longs alongside them.
+     */
+    private static void put(Object[] values, long[] longs, int index, Object value) {
+        if (value instanceof Long integer) {
+            values[index] = LONG;
+            longs[index] = integer;
+        } else {
+            values[index] = value;
+        }
+    }
+
+    /**
+     * Returns the value held at an index, boxed if it is a long.
+     */
+    private static Object get(Object[] values, long[] longs, int index) {
+        return values[index] == LONG ? Long.valueOf(longs[index]) : values[index];
+    }
+
+    /**
+     * Returns the values from one index of the stack to another, boxed, as
+     * the arguments of an invocation.
+     */
+    private static Object[] arguments(Object[] stack, long[] longs, int from, int to) {
+        Object[] arguments = new Object[to - from];
+        for (int i = from; i < to; i++) {
+            arguments[i - from] = get(stack, longs, i);
+        }
+        return arguments;
+    }
+
+    /**
+     * Throws if a value is an invalid left operand of an operation, as the
+     * interpreter does before evaluating the right operand.
+     */
+    private static void check(int op, Object left) {
+        boolean valid;
+        switch (op) {
+            case Bytecode.LESS:
+            case Bytecode.GREATER:
+                valid = isInteger(left) || left instanceof BigDecimal || left instanceof Double || left instanceof Boolean || left instanceof String;
+                break;
+            case Bytecode.POWER:
+                valid = isInteger(left);
+                break;
+            default:
+                valid = isInteger(left) || left instanceof BigDecimal || left instanceof Double;
+                break;
+        }
+        if (!valid) {
+            throw new RuntimeException("Invalid class type");
+        }
+    }
+
+    /**
+     * Applies an operation to the values at sp - 1 and sp of the stack,
+     * leaving its result at sp - 1.
+     */
+    private static void binary(int op, Object[] stack, long[] longs, int sp) {
+        put(stack, longs, sp - 1, binary(op, get(stack, longs, sp - 1), get(stack, longs, sp)));
+    }
+
+    /**
+     * Applies an operation to two values, checking the left operand first if
+     * it is checked at all (see {@link #check}), as the operation's CHECK is
+     * left out when its right operand is a literal.
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static Object binary(int op, Object left, Object right) {
+        if (op == Bytecode.EQUAL || op == Bytecode.NOT_EQUAL) {
+            return Interpreter.equals(left, right) == (op == Bytecode.EQUAL);
+        } else if (op == Bytecode.CONCAT) {
+            return left.toString().concat(right.toString());
+        } else if (op != Bytecode.ADD) {
+            check(op, left);
+        }
+        if (isInteger(left)) {
+            return integer(op, left, requireInteger(right));
+        } else if (left instanceof Double) {
+            return decimal(op, (Double) left, requireType(Double.class, right));
+        }
+        switch (op) {
+            case Bytecode.LESS:
+                return ((Comparable) left).compareTo(requireType(left.getClass(), right)) < 0;
+            case Bytecode.GREATER:
+                return ((Comparable) left).compareTo(requireType(left.getClass(), right)) > 0;
+            case Bytecode.ADD:
+                if (left instanceof BigDecimal) {
+                    return ((BigDecimal) left).add(requireType(BigDecimal.class, right));
+                } else if (left instanceof String || right instanceof String) {
+                    return left.toString().concat(right.toString());
+                }
+                throw new RuntimeException("Invalid class type");
+            case Bytecode.SUBTRACT:
+                return ((BigDecimal) left).subtract(requireType(BigDecimal.class, right));
+            case Bytecode.MULTIPLY:
+                return ((BigDecimal) left).multiply(requireType(BigDecimal.class, right));
+            case Bytecode.DIVIDE:
+                return ((BigDecimal) left).divide(requireType(BigDecimal.class, right), RoundingMode.HALF_EVEN);
+            default:
+                throw new AssertionError("Invalid opcode " + op + ".");
+        }
+    }
+
+    /**
+     * Applies an operation to two Integers, as longs unless the result (or an
+     * operand) does not fit in one. The results and exceptions are those of
+     * the same operation on BigIntegers.
+     */
+    private static Object integer(int op, Object left, Object right) {
+        if (left instanceof Long && right instanceof Long) {
+            long l = (Long) left;
+            long r = (Long) right;
+            try {
+                switch (op) {
+                    case Bytecode.LESS:
+                        return l < r;
+                    case Bytecode.GREATER:
+                        return l > r;
+                    case Bytecode.ADD:
+                        return Math.addExact(l, r);
+                    case Bytecode.SUBTRACT:
+                        return Math.subtractExact(l, r);
+                    case Bytecode.MULTIPLY:
+                        return Math.multiplyExact(l, r);
+                    case Bytecode.DIVIDE:
+                        // Zero and the one overflowing quotient are left to BigInteger
+                        if (r != 0 && (l != Long.MIN_VALUE || r != -1)) {
+                            return l / r;
+                        }
+                        break;
+                    default:
+                        break;
+                }
+            } catch (ArithmeticException ex) {
+                // Overflowed, so falls back to BigIntegers
+            }
+        }
+        BigInteger l = (BigInteger) Bytecode.toValue(left);
+        BigInteger r = (BigInteger) Bytecode.toValue(right);
+        switch (op) {
+            case Bytecode.LESS:
+                return l.compareTo(r) < 0;
+            case Bytecode.GREATER:
+                return l.compareTo(r) > 0;
+            case Bytecode.ADD:
+                return Bytecode.fromValue(l.add(r));
+            case Bytecode.SUBTRACT:
+                return Bytecode.fromValue(l.subtract(r));
+            case Bytecode.MULTIPLY:
+                return Bytecode.fromValue(l.multiply(r));
+            case Bytecode.DIVIDE:
+                return Bytecode.fromValue(l.divide(r));
+            case Bytecode.POWER:
+                return Bytecode.fromValue(l.pow(r.intValue()));
+            default:
+                throw new AssertionError("Invalid opcode " + op + ".");
+        }
+    }
+
+    /**
+     * Applies an operation to two doubles, for {@link Interpreter.DecimalMode#DOUBLE}.
+     */
+    private static Object decimal(int op, double left, double right) {
+        switch (op) {
+            case Bytecode.LESS:
+                return left < right;
+            case Bytecode.GREATER:
+                return left > right;
+            case Bytecode.ADD:
+                return left + right;
+            case Bytecode.SUBTRACT:
+                return left - right;
+            case Bytecode.MULTIPLY:
+                return left * right;
+            case Bytecode.DIVIDE:
+                return left / right;
+            default:
+                throw new AssertionError("Invalid opcode " + op + ".");
+        }
+    }
+
+    private static boolean isInteger(Object value) {
+        return value instanceof Long || value instanceof BigInteger;
+    }
+
+    private static Object requireInteger(Object value) {
+        if (!isInteger(value)) {
+            throw new RuntimeException("Expected type " + BigInteger.class.getName() + ", received " + typeName(value) + ".");
+        }
+        return value;
+    }
+
+    /**
+     * Returns the offset of a list, as the int value of an Integer.
+     */
+    private static int offset(Object value) {
+        return requireInteger(value) instanceof Long ? (int) (long) (Long) value : ((BigInteger) value).intValue();
+    }
+
+    /**
+     * Helper function to ensure a value is of the appropriate type, with the
+     * interpreter's message.
+     */
+    private static <T> T requireType(Class<T> type, Object value) {
+        if (type.isInstance(value)) {
+            return type.cast(value);
+        } else {
+            throw new RuntimeException("Expected type " + type.getName() + ", received " + typeName(value) + ".");
+        }
+    }
+
+    /**
+     * Returns a list value, which holds raw values of any type.
+     */
+    @SuppressWarnings("unchecked")
+    private static List<Object> requireList(Object value) {
+        return requireType(List.class, value);
+    }
+
+    /**
+     * Returns the class name of a value as the interpreter has it.
+     */
+    private static String typeName(Object value) {
+        return value instanceof Long ? BigInteger.class.getName() : value.getClass().getName();
+    }
+
+    private static Environment.PlcObject wrap(Object value) {
+        return value == Bytecode.NIL ? Environment.NIL : Environment.create(Bytecode.toValue(value));
+    }
+
+    /**
+     * A function of the source, compiled on its first invocation.
+     */
+    private static final class Function {
+
+        private final Ast.Function ast;
+        private Bytecode bytecode;
+
+        private Function(Ast.Function ast) {
+            this.ast = ast;
+        }
+
+    }
+
+    /**
+     * The variables of a function invocation or block by slot, with the names
+     * of the slots for lookups by name. A slot is null until its variable is
+     * declared, and holds {@link #LONG} if its value is in {@link #longs}.
+     */
+    private static final class Frame {
+
+        private final Frame parent;
+        private final String[] names;
+        private final Object[] values;
+        private final long[] longs;
+        private boolean[] immutable;
+
+        /**
+         * The variables of the base scope held by slot, if the frame is a cell
+         * or holds the variables of a loop, and whether any of the frame's
+         * variables has been assigned since they were last written back.
+         */
+        private Environment.Variable[] variables;
+        private boolean dirty;
+
+        private Frame(Frame parent, String[] names) {
+            this.parent = parent;
+            this.names = names;
+            this.values = new Object[names.length];
+            this.longs = new long[names.length];
+        }
+
+        /**
+         * Returns the slot of a declared variable, or -1. Names are interned.
+         */
+        private int indexOf(String name) {
+            for (int i = 0; i < names.length; i++) {
+                if (names[i] == name && values[i] != null) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        private Object get(int slot) {
+            return VirtualMachine.get(values, longs, slot);
+        }
+
+        private void put(int slot, String name, Object value) {
+            if (value instanceof Long integer) {
+                define(slot, name, LONG, integer);
+            } else {
+                define(slot, name, value, 0);
+            }
+        }
+
+        private void define(int slot, String name, Object value, long integer) {
+            if (values[slot] != null) {
+                throw new RuntimeException("The variable " + name + " is already defined in this scope.");
+            }
+            values[slot] = value;
+            longs[slot] = integer;
+        }
+
+        private void set(int slot, Object value, long integer) {
+            if (immutable != null && immutable[slot]) {
+                throw new RuntimeException("Immutable variable");
+            }
+            values[slot] = value;
+            longs[slot] = integer;
+            dirty = true;
+        }
+
+        /**
+         * Declares a slot as holding a variable of the base scope, with its
+         * value and mutability.
+         */
+        private void bind(int slot, Environment.Variable variable) {
+            if (variables == null) {
+                variables = new Environment.Variable[values.length];
+            }
+            variables[slot] = variable;
+            VirtualMachine.put(values, longs, slot, Bytecode.fromValue(variable.getValue().getValue()));
+            if (!variable.getMutable()) {
+                if (immutable == null) {
+                    immutable = new boolean[values.length];
+                }
+                immutable[slot] = true;
+            }
+        }
+
+        /**
+         * Writes the values of the variables held back to them, if any of the
+         * frame's variables has been assigned.
+         */
+        private void flush() {
+            if (dirty) {
+                for (int i = 0; i < variables.length; i++) {
+                    if (variables[i] != null && !immutable(i)) {
+                        variables[i].setValue(wrap(get(i)));
+                    }
+                }
+                dirty = false;
+            }
+        }
+
+        /**
+         * Reads the values of the variables held again, once they have been
+         * written back, as they may since have been assigned in the scope.
+         */
+        private void reload() {
+            for (int i = 0; i < variables.length; i++) {
+                if (variables[i] != null) {
+                    VirtualMachine.put(values, longs, i, Bytecode.fromValue(variables[i].getValue().getValue()));
+                }
+            }
+        }
+
+        private boolean immutable(int slot) {
+            return immutable != null && immutable[slot];
+        }
+
+    }
+
+}
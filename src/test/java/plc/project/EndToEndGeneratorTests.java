@@ -7,6 +7,8 @@ import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.Arguments;
 import org.junit.jupiter.params.provider.MethodSource;
 
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
 import java.io.PrintWriter;
 import java.io.StringWriter;
 import java.math.BigDecimal;
@@ -204,6 +206,67 @@ public class EndToEndGeneratorTests {
         );
     }
 
+    @ParameterizedTest(name = "{0}")
+    @MethodSource
+    void testJvm(String test, String input, String expected) {
+        Ast.Source ast = new Parser(new Lexer(input).lex()).parseSource();
+        new Analyzer(new Scope(null)).visit(ast);
+        JvmGenerator generator = new JvmGenerator();
+        generator.visit(ast);
+
+        PrintStream sysout = System.out;
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        System.setOut(new PrintStream(out));
+        String result;
+        try {
+            int exit = generator.run();
+            result = out + "" + exit;
+        } catch (RuntimeException ex) {
+            result = out + ex.getClass().getSimpleName() + ": " + ex.getMessage();
+        } finally {
+            System.setOut(sysout);
+        }
+        Assertions.assertEquals(expected.replace("\n", System.lineSeparator()), result);
+    }
+
+    private static Stream<Arguments> testJvm() {
+        return Stream.of(
+                Arguments.of("Hello, World!",
+                        "FUN main(): Integer DO\n    print(\"Hello, World!\");\n    RETURN 0;\nEND",
+                        "Hello, World!\n0"
+                ),
+                Arguments.of("Globals",
+                        // VAR count: Integer = 1; VAL scale: Decimal = 1.5; LIST list: Integer = [1, 2, 3];
+                        "VAR count: Integer = 1;\nVAL scale: Decimal = 1.5;\nLIST list: Integer = [1, 2, 3];\n" +
+                                "FUN main(): Integer DO\n    list[1] = list[2] * 10;\n    count = count + list[1];\n" +
+                                "    print(scale * 2.0);\n    RETURN count;\nEND",
+                        "3.0\n31"
+                ),
+                Arguments.of("Recursion",
+                        "FUN fib(n: Integer): Integer DO\n    IF n < 2 DO\n        RETURN n;\n    END\n" +
+                                "    RETURN fib(n - 1) + fib(n - 2);\nEND\nFUN main(): Integer DO\n    RETURN fib(20);\nEND",
+                        "6765"
+                ),
+                Arguments.of("Loop",
+                        "FUN main(): Integer DO\n    LET i = 0;\n    LET total: Decimal = 0.0;\n    WHILE i < 4 DO\n" +
+                                "        total = total + 0.5;\n        i = i + 1;\n    END\n    print(\"total: \" + total);\n" +
+                                "    RETURN i ^ 3;\nEND",
+                        "total: 2.0\n64"
+                ),
+                Arguments.of("Switch",
+                        "FUN name(c: Character): String DO\n    SWITCH c\n        CASE 'y': RETURN \"yes\";\n" +
+                                "        CASE 'n': RETURN \"no\";\n        DEFAULT RETURN \"maybe\";\n    END\nEND\n" +
+                                "FUN log(s: String) DO\n    print(s);\nEND\n" +
+                                "FUN main(): Integer DO\n    log(name('y'));\n    log(name('?'));\n    RETURN 0;\nEND",
+                        "yes\nmaybe\n0"
+                ),
+                Arguments.of("Division By Zero",
+                        "FUN main(): Integer DO\n    print(1);\n    RETURN 1 / 0;\nEND",
+                        "1\nArithmeticException: / by zero"
+                )
+        );
+    }
+
     /**
      * Helper function for tests, using a StringWriter as the output stream.
      */
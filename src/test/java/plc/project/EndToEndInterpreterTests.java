@@ -367,6 +367,259 @@ final class EndToEndInterpreterTests {
         );
     }
 
+    @ParameterizedTest
+    @MethodSource
+    void testBytecode(String test, String input) {
+        Ast.Source ast = new Parser(new Lexer(input).lex()).parseSource();
+        Assertions.assertEquals(run(ast, Interpreter.Engine.TREE), run(ast, Interpreter.Engine.BYTECODE));
+    }
+
+    private static Stream<Arguments> testBytecode() {
+        return Stream.of(
+                Arguments.of("Loop",
+                        "VAR total: Integer = 0; FUN main(): Integer DO LET i = 0; WHILE i < 10 DO LET j = i * 2; total = total + j; i = i + 1; END RETURN total; END"
+                ),
+                Arguments.of("Recursion",
+                        "VAR n: Integer = 10; FUN sum(): Integer DO IF n == 0 DO RETURN 0; END n = n - 1; RETURN sum() + n + 1; END FUN main(): Integer DO RETURN sum(); END"
+                ),
+                // f sees main's y, and its parameter z is bound to the global z
+                Arguments.of("Dynamic Scope",
+                        "VAR y: Integer = 1; VAL z: Integer = 2; FUN f(z: Integer): Integer DO print(y + z); z = 3; RETURN 0; END FUN main(): Integer DO LET y = 10; RETURN f(5); END"
+                ),
+                // The left operand is evaluated again to concatenate
+                Arguments.of("Concatenation",
+                        "FUN f(): String DO print(\"f\"); RETURN \"a\"; END FUN main(): String DO SWITCH f() + 1 CASE \"a1\": print(1); DEFAULT print(2); END RETURN f() + 1.5; END"
+                ),
+                Arguments.of("Division By Zero",
+                        "LIST list: Integer = [1, 2]; FUN main(): Integer DO list[0] = 1 / (list[1] - 2); END"
+                ),
+                // the RETURN completes the IF, CASE, SWITCH and WHILE around it
+                Arguments.of("Nested Return",
+                        "FUN f(): Integer DO LET i = 0; WHILE TRUE DO SWITCH i CASE 3: IF TRUE DO RETURN i; END print(i); DEFAULT i = i + 1; END print(i); END END FUN main(): Integer DO print(f()); RETURN f() + 1; END"
+                ),
+                // n overflows a long, and is halved back into one
+                Arguments.of("Overflow",
+                        "LIST list: Integer = [1]; FUN main(): Integer DO LET n = 3; WHILE n < 9223372036854775807 * 4 DO n = n * n; END print(n); list[0] = n; WHILE n > 9223372036854775807 DO n = n / 2; END print(n - 1 + 1 == n); RETURN list[0] - n * 2 ^ 2; END"
+                ),
+                // each operation just overflows a long, or just doesn't
+                Arguments.of("Long Bounds",
+                        "FUN main(): Integer DO LET x = 9223372036854775807; print(x + 1 - 1 == x); print(0 - x - 1 - 1); print((0 - x - 1) / (0 - 1)); print(3037000499 * 3037000499); print(3037000500 * 3037000500); SWITCH x + 0 CASE 9223372036854775807: print(1); DEFAULT print(2); END RETURN x - (0 - 1); END"
+                ),
+                Arguments.of("Immutable Global",
+                        "VAL k: Integer = 1; VAR g: Integer = 2; FUN main(): Integer DO g = g + k; print(g); k = g; RETURN k; END"
+                )
+        );
+    }
+
+    @ParameterizedTest
+    @MethodSource
+    void testTiered(String test, String input) {
+        Ast.Source ast = new Parser(new Lexer(input).lex()).parseSource();
+        Assertions.assertEquals(run(ast, Interpreter.Engine.TREE), run(ast, Interpreter.Engine.TIERED));
+    }
+
+    private static Stream<Arguments> testTiered() {
+        return Stream.of(
+                // add is compiled partway through the loop, which is then finished as bytecode
+                Arguments.of("Hot Function",
+                        "VAR total: Integer = 0; FUN add(a: Integer): Integer DO RETURN total + a; END FUN main(): Integer DO LET i = 0; WHILE i < 3000 DO total = add(i); i = i + 1; END RETURN total; END"
+                ),
+                // the compiled loop returns from main, and sees main's variables
+                Arguments.of("Hot Loop",
+                        "FUN main(): Integer DO LET i = 0; LET j = 0; WHILE TRUE DO LET k = i * 2; j = j + k; i = i + 1; IF i == 2500 DO RETURN j; END END END"
+                ),
+                // f is compiled while main is visited, and sees main's x
+                Arguments.of("Dynamic Scope",
+                        "FUN f(): Integer DO RETURN x + 1; END FUN main(): Integer DO LET x = 0; LET i = 0; WHILE i < 2000 DO i = f() - x + i; x = x + 1; END print(x); RETURN i; END"
+                ),
+                // the loop's copies of g and main's s are written back before bump and last, and g read again after
+                Arguments.of("Loop Variables",
+                        "VAR g: Integer = 0; VAL k: Integer = 3; FUN bump(): Integer DO g = g + 1000; s = s + 1; RETURN g; END FUN last(n: Integer): Integer DO g = g + n; RETURN g; END FUN main(): Integer DO LET i = 0; LET s = 0; WHILE i < 3000 DO IF i - i / 500 * 500 == 0 DO print(bump()); END g = g + k; s = s + i; i = i + 1; IF i == 2999 DO RETURN last(s); END END RETURN s; END"
+                ),
+                Arguments.of("Error",
+                        "LIST list: Integer = [1, 2]; FUN main(): Integer DO LET i = 0; WHILE i < 2000 DO i = i + 1; END list[0] = 1 / (list[1] - 2); END"
+                )
+        );
+    }
+
+    @ParameterizedTest
+    @MethodSource
+    void testDoubleDecimals(String test, String input, String expected) {
+        Ast.Source ast = new Parser(new Lexer(input).lex()).parseSource();
+        for (Interpreter.Engine engine : Interpreter.Engine.values()) {
+            Assertions.assertEquals(expected.replace("\n", System.lineSeparator()), run(ast, engine, Interpreter.DecimalMode.DOUBLE), engine.name());
+        }
+    }
+
+    private static Stream<Arguments> testDoubleDecimals() {
+        return Stream.of(
+                Arguments.of("Arithmetic",
+                        "FUN main(): Decimal DO print(1.50); print(0.1 + 0.2); print(1.0 / 3.0); RETURN 2.0 * 1.25 - 0.5; END",
+                        "1.5\n0.30000000000000004\n0.3333333333333333\n2.0"
+                ),
+                Arguments.of("Division By Zero",
+                        "FUN main(): Boolean DO print(1.0 / 0.0); print(0.0 / 0.0); RETURN 0.0 / 0.0 == 0.0 / 0.0; END",
+                        "Infinity\nNaN\nfalse"
+                ),
+                Arguments.of("Comparison",
+                        "FUN main(): Boolean DO print(0.0 == -1.0 * 0.0); print(0.0 / 0.0 < 1.0); RETURN 1.5 > 1.25; END",
+                        "true\nfalse\ntrue"
+                ),
+                Arguments.of("Loop",
+                        "FUN main(): Decimal DO LET x = 0.0; LET i = 0; WHILE i < 2000 DO x = x + 0.5 / 2.0; i = i + 1; END RETURN x; END",
+                        "500.0"
+                )
+        );
+    }
+
+    @ParameterizedTest
+    @MethodSource
+    void testBlockScopes(String test, String input, String expected) {
+        Ast.Source ast = new Parser(new Lexer(input).lex()).parseSource();
+        for (Interpreter.Engine engine : Interpreter.Engine.values()) {
+            Assertions.assertEquals(expected.replace("\n", System.lineSeparator()), run(ast, engine), engine.name());
+        }
+    }
+
+    private static Stream<Arguments> testBlockScopes() {
+        return Stream.of(
+                // neither block declares, so both run in main's scope
+                Arguments.of("Undeclared Blocks",
+                        "VAR total: Integer = 0; FUN main(): Integer DO LET i = 0; WHILE i < 4 DO IF i != 2 DO total = total + i; ELSE print(total); END i = i + 1; END print(i); RETURN total; END",
+                        "1\n4\n4"
+                ),
+                // the loop's scope is cleared for each iteration's declaration
+                Arguments.of("Loop Declaration",
+                        "FUN main(): Integer DO LET sum = 0; LET i = 0; WHILE i < 3 DO LET square = i * i; sum = sum + square; i = i + 1; END RETURN sum; END",
+                        "5"
+                ),
+                // x is one scope out from the IF, not two, as the WHILE has
+                // none (and two out would be main's w)
+                Arguments.of("Nested Blocks",
+                        "FUN f(): Integer DO LET x = 1; LET i = 0; WHILE i < 2 DO IF TRUE DO LET y = x + i; x = y * 2; END i = i + 1; END RETURN x; END FUN main(): Integer DO LET w = 100; LET x = f(); RETURN x; END",
+                        "6"
+                ),
+                // the branch's scope is cleared for each iteration's declaration
+                Arguments.of("Branch Declaration",
+                        "FUN main(): Integer DO LET sum = 0; LET i = 0; WHILE i < 4 DO IF i != 2 DO LET square = i * i; sum = sum + square; END i = i + 1; END RETURN sum; END",
+                        "10"
+                ),
+                // the recursive call's branch has its own scope, leaving m
+                Arguments.of("Recursive Branch",
+                        "VAR n: Integer = 3; FUN f(): Integer DO IF n > 0 DO LET m = n; n = n - 1; LET r = f(); print(m); RETURN m + r; END RETURN 0; END FUN main(): Integer DO RETURN f(); END",
+                        "1\n2\n3\n6"
+                )
+        );
+    }
+
+    @ParameterizedTest
+    @MethodSource
+    void testTailCalls(String test, String input, String expected) {
+        Ast.Source ast = new Parser(new Lexer(input).lex()).parseSource();
+        for (Interpreter.Engine engine : Interpreter.Engine.values()) {
+            Assertions.assertEquals(expected.replace("\n", System.lineSeparator()), run(ast, engine), engine.name());
+        }
+    }
+
+    private static Stream<Arguments> testTailCalls() {
+        return Stream.of(
+                // far deeper than the Java stack allows calls
+                Arguments.of("Recursion",
+                        "VAR n: Integer = 100000; FUN count(): Integer DO IF n == 0 DO RETURN 0; END n = n - 1; RETURN count(); END FUN main(): Integer DO RETURN count(); END",
+                        "0"
+                ),
+                // each call's parameter and local would otherwise stay
+                // visible (and looked up through) for the next one
+                Arguments.of("Parameters",
+                        "VAR total: Integer = 0; FUN add(n: Integer): Integer DO LET next = total + n; total = next; IF total < 100000 DO RETURN add(n); END RETURN total; END FUN main(): Integer DO RETURN add(1); END",
+                        "100000"
+                ),
+                Arguments.of("Mutual Recursion",
+                        "VAR n: Integer = 5001; FUN even(): Boolean DO LET m = n; IF m == 0 DO RETURN TRUE; END n = m - 1; RETURN odd(); END FUN odd(): Boolean DO IF n == 0 DO RETURN FALSE; END n = n - 1; RETURN even(); END FUN main(): Boolean DO RETURN even(); END",
+                        "false"
+                ),
+                // g still sees the variables of f (and of the IF it returns from)
+                Arguments.of("Dynamic Scope",
+                        "FUN f(): Integer DO LET x = 1; IF TRUE DO LET y = 2; RETURN g(); END END FUN g(): Integer DO RETURN x + y; END FUN main(): Integer DO RETURN f(); END",
+                        "3"
+                ),
+                Arguments.of("Native",
+                        "FUN f(): Integer DO RETURN print(1); END FUN main(): Integer DO print(f()); RETURN 2; END",
+                        "1\nnil\n2"
+                )
+        );
+    }
+
+    @ParameterizedTest
+    @MethodSource
+    void testMemoization(String test, String input, long hits, long misses) {
+        Ast.Source ast = new Parser(new Lexer(input).lex()).parseSource();
+        for (Interpreter.Engine engine : new Interpreter.Engine[] {Interpreter.Engine.TREE, Interpreter.Engine.TIERED}) {
+            Interpreter interpreter = new Interpreter(new Scope(null), engine, Interpreter.DecimalMode.BIG_DECIMAL, 16);
+            Assertions.assertEquals(run(ast, engine), run(interpreter, ast), engine.name());
+            Assertions.assertEquals(hits, interpreter.getMemoHits(), engine.name());
+            Assertions.assertEquals(misses, interpreter.getMemoMisses(), engine.name());
+        }
+    }
+
+    private static Stream<Arguments> testMemoization() {
+        return Stream.of(
+                // main is pure too, and misses once
+                Arguments.of("Loop",
+                        "FUN square(x: Integer): Integer DO RETURN x * x; END FUN main(): Integer DO LET total = 0; LET i = 0; WHILE i < 100 DO total = total + square(i / 10); i = i + 1; END RETURN total; END",
+                        90L, 11L
+                ),
+                // the second call binds n to main's variable rather than the argument
+                Arguments.of("Caller Variable",
+                        "FUN twice(n: Integer): Integer DO RETURN n * 2; END FUN main(): Integer DO print(twice(1)); LET n = 5; RETURN twice(1); END",
+                        0L, 1L
+                ),
+                // double's y is bound by quad's caller unless quad declares it
+                Arguments.of("Callee Parameter",
+                        "FUN double(y: Integer): Integer DO RETURN y * 2; END FUN quad(x: Integer): Integer DO RETURN double(double(x)); END FUN main(): Integer DO print(quad(1)); print(quad(1)); LET y = 3; RETURN quad(1); END",
+                        1L, 3L
+                ),
+                Arguments.of("Impure",
+                        "VAR count: Integer = 0; FUN next(): Integer DO count = count + 1; RETURN count; END FUN log(x: Integer): Integer DO print(x); RETURN x; END FUN main(): Integer DO log(next()); RETURN log(next()); END",
+                        0L, 0L
+                ),
+                Arguments.of("List Argument",
+                        "LIST list: Integer = [1, 2]; FUN first(l: Integer): Integer DO RETURN l[0]; END FUN main(): Integer DO print(first(list)); list[0] = 3; RETURN first(list); END",
+                        0L, 0L
+                )
+        );
+    }
+
+    /**
+     * Runs a source with an engine, returning its output and result (or
+     * exception, including its causes).
+     */
+    private static String run(Ast.Source ast, Interpreter.Engine engine) {
+        return run(ast, engine, Interpreter.DecimalMode.BIG_DECIMAL);
+    }
+
+    private static String run(Ast.Source ast, Interpreter.Engine engine, Interpreter.DecimalMode decimals) {
+        return run(new Interpreter(new Scope(null), engine, decimals), ast);
+    }
+
+    private static String run(Interpreter interpreter, Ast.Source ast) {
+        PrintStream sysout = System.out;
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        System.setOut(new PrintStream(out));
+        try {
+            Object result = interpreter.visit(ast).getValue();
+            return out + "" + result;
+        } catch (RuntimeException ex) {
+            StringBuilder builder = new StringBuilder(out.toString());
+            for (Throwable cause = ex; cause != null; cause = cause.getCause()) {
+                builder.append(cause.getClass().getName()).append(": ").append(cause.getMessage()).append('\n');
+            }
+            return builder.toString();
+        } finally {
+            System.setOut(sysout);
+        }
+    }
+
     private static <T extends Ast> Scope test(String input, Object expected, Scope scope, Function<Parser, T> function) {
         Lexer lexer = new Lexer(input);
         Parser parser = new Parser(lexer.lex());
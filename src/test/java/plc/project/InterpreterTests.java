@@ -668,6 +668,56 @@ final class InterpreterTests {
         );
     }
 
+    @Test
+    void testFunctionRedefinition() {
+        // function() is looked up again once a function shadowing it is defined
+        Scope scope = new Scope(null);
+        scope.defineFunction("function", 0, args -> Environment.create("outer"));
+        Interpreter interpreter = new Interpreter(scope);
+        Ast.Expression.Function call = new Ast.Expression.Function("function", Arrays.asList());
+        Assertions.assertEquals("outer", interpreter.visit(call).getValue());
+        interpreter.getScope().defineFunction("function", 0, args -> Environment.create("inner"));
+        Assertions.assertEquals("inner", interpreter.visit(call).getValue());
+    }
+
+    @Test
+    void testSharedFunctionCall() {
+        // each interpreter looks up the call in its own scope
+        Ast.Expression.Function call = new Ast.Expression.Function("function", Arrays.asList());
+        Scope first = new Scope(null);
+        first.defineFunction("function", 0, args -> Environment.create("first"));
+        Scope second = new Scope(null);
+        second.defineFunction("function", 0, args -> Environment.create("second"));
+        Interpreter firstInterpreter = new Interpreter(first);
+        Interpreter secondInterpreter = new Interpreter(second);
+        Assertions.assertEquals("first", firstInterpreter.visit(call).getValue());
+        Assertions.assertEquals("second", secondInterpreter.visit(call).getValue());
+        Assertions.assertEquals("first", firstInterpreter.visit(call).getValue());
+    }
+
+    @Test
+    void testReturnOutsideFunction() {
+        // RETURN 1; then FUN f() DO log("first"); log("second"); RETURN 10; END
+        Scope scope = new Scope(null);
+        StringBuilder builder = new StringBuilder();
+        scope.defineFunction("log", 1, args -> {
+            builder.append(args.get(0).getValue());
+            return args.get(0);
+        });
+        Interpreter interpreter = new Interpreter(scope);
+        RuntimeException rex = Assertions.assertThrows(RuntimeException.class,
+                () -> interpreter.visit(new Ast.Statement.Return(new Ast.Expression.Literal(BigInteger.ONE))));
+        Assertions.assertEquals("Return outside of a function.", rex.getMessage());
+        interpreter.visit(new Ast.Function("f", Arrays.asList(), Arrays.asList(
+                new Ast.Statement.Expression(new Ast.Expression.Function("log", Arrays.asList(new Ast.Expression.Literal("first")))),
+                new Ast.Statement.Expression(new Ast.Expression.Function("log", Arrays.asList(new Ast.Expression.Literal("second")))),
+                new Ast.Statement.Return(new Ast.Expression.Literal(BigInteger.TEN))
+        )));
+        Environment.PlcObject result = interpreter.visit(new Ast.Expression.Function("f", Arrays.asList()));
+        Assertions.assertEquals(BigInteger.TEN, result.getValue());
+        Assertions.assertEquals("firstsecond", builder.toString());
+    }
+
     @Test
     void testFunctionCalls() {
         /*
@@ -735,6 +785,56 @@ final class InterpreterTests {
         test(ast, expected, new Scope(null));
     }
 
+    @ParameterizedTest
+    @MethodSource
+    void testSharedObjects(String test, Object value, boolean shared) {
+        Environment.PlcObject object = Environment.create(value);
+        Assertions.assertEquals(value, object.getValue());
+        Assertions.assertEquals(shared, Environment.create(value) == object);
+    }
+
+    private static Stream<Arguments> testSharedObjects() {
+        return Stream.of(
+                Arguments.of("Boolean", true, true),
+                Arguments.of("Smallest Integer", BigInteger.valueOf(-128), true),
+                Arguments.of("Below Smallest Integer", BigInteger.valueOf(-129), false),
+                Arguments.of("Largest Integer", BigInteger.valueOf(1023), true),
+                Arguments.of("Above Largest Integer", BigInteger.valueOf(1024), false),
+                Arguments.of("Large Integer", BigInteger.ONE.shiftLeft(80), false),
+                Arguments.of("ASCII Character", 'a', true),
+                Arguments.of("Non-ASCII Character", '\u00e9', false),
+                Arguments.of("String", "string", true),
+                Arguments.of("Decimal", new BigDecimal("1.0"), false)
+        );
+    }
+
+    @Test
+    void testSharedNil() {
+        Assertions.assertSame(Environment.NIL, Environment.create(Environment.NIL.getValue()));
+    }
+
+    @Test
+    void testSharedStringCollision() {
+        // "Aa" and "BB" have the same hash code, so replace each other
+        Assertions.assertEquals("Aa".hashCode(), "BB".hashCode());
+        Assertions.assertEquals("Aa", Environment.create("Aa").getValue());
+        Assertions.assertEquals("BB", Environment.create("BB").getValue());
+        Assertions.assertEquals("Aa", Environment.create("Aa").getValue());
+        Assertions.assertEquals("BB", Environment.create("BB").getValue());
+    }
+
+    @Test
+    void testSharedResults() {
+        // accesses and calls give the variable's and function's own objects
+        Environment.PlcObject value = Environment.create(new BigDecimal("1.5"));
+        Scope scope = new Scope(null);
+        scope.defineVariable("variable", true, value);
+        scope.defineFunction("function", 0, args -> value);
+        Interpreter interpreter = new Interpreter(scope);
+        Assertions.assertSame(value, interpreter.visit(new Ast.Expression.Access(Optional.empty(), "variable")));
+        Assertions.assertSame(value, interpreter.visit(new Ast.Expression.Function("function", Arrays.asList())));
+    }
+
     @Test
     void testIfScope() {
     /*
@@ -786,6 +886,40 @@ final class InterpreterTests {
         Assertions.assertEquals(expected, builder.toString());
     }
 
+    @Test
+    void testResolvedSlots() {
+    /*
+        FUN main(a) DO
+            LET x = a;
+            IF TRUE DO
+                LET y = x;
+                x = y + g;
+            END
+        END
+     */
+        Ast.Statement.Declaration x = new Ast.Statement.Declaration("x", Optional.of(new Ast.Expression.Access(Optional.empty(), "a")));
+        Ast.Statement.Declaration y = new Ast.Statement.Declaration("y", Optional.of(new Ast.Expression.Access(Optional.empty(), "x")));
+        Ast.Expression.Access receiver = new Ast.Expression.Access(Optional.empty(), "x");
+        Ast.Expression.Access accessY = new Ast.Expression.Access(Optional.empty(), "y");
+        Ast.Expression.Access accessG = new Ast.Expression.Access(Optional.empty(), "g");
+        Ast.Function function = new Ast.Function("main", Arrays.asList("a"), Arrays.asList(x,
+                new Ast.Statement.If(new Ast.Expression.Literal(true), Arrays.asList(y,
+                        new Ast.Statement.Assignment(receiver, new Ast.Expression.Binary("+", accessY, accessG))
+                ), Arrays.asList())
+        ));
+
+        new Resolver().visit(function);
+        Assertions.assertEquals(1, x.getSlot());
+        Assertions.assertEquals(0, y.getSlot());
+        Assertions.assertEquals(0, ((Ast.Expression.Access) x.getValue().get()).getSlot());
+        Assertions.assertEquals(1, ((Ast.Expression.Access) y.getValue().get()).getDepth());
+        Assertions.assertEquals(1, receiver.getDepth());
+        Assertions.assertEquals(1, receiver.getSlot());
+        Assertions.assertEquals(0, accessY.getDepth());
+        // Globals are looked up by name since functions are dynamically scoped
+        Assertions.assertFalse(accessG.isResolved());
+    }
+
     @Test
     void testFunctionScope() {
     /*
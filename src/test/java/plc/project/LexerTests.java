@@ -6,6 +6,10 @@ import org.junit.jupiter.params.ParameterizedTest;
 import org.junit.jupiter.params.provider.Arguments;
 import org.junit.jupiter.params.provider.MethodSource;
 
+import java.io.FilterReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
 import java.util.Arrays;
 import java.util.List;
 import java.util.stream.Stream;
@@ -405,6 +409,115 @@ public class LexerTests {
         );
     }
 
+    @ParameterizedTest
+    @MethodSource("testExamples")
+    void testTableEngine(String test, String input, List<Token> expected) {
+        Assertions.assertEquals(expected, new Lexer(input, Lexer.Engine.TABLE).lex());
+    }
+
+    @ParameterizedTest
+    @MethodSource("testExamples")
+    void testReader(String test, String input, List<Token> expected) {
+        Assertions.assertEquals(expected, new Lexer(new StringReader(input), Lexer.Engine.REGEX).lex());
+        Assertions.assertEquals(expected, new Lexer(new StringReader(input), Lexer.Engine.TABLE).lex());
+    }
+
+    @Test
+    void testReaderBuffer() {
+        // larger than the reader's 8192 char buffer, with an identifier
+        // crossing its edge and a string longer than all of it
+        StringBuilder source = new StringBuilder();
+        while (source.length() < 8190) {
+            source.append("a ");
+        }
+        source.append("crossing \"").append("s".repeat(10000)).append("\"\n");
+        for (int i = 0; i < 500; i++) {
+            source.append("FUN f").append(i).append("(x) DO RETURN x + 1.5; END\n");
+        }
+        String input = source.toString();
+        for (Lexer.Engine engine : Lexer.Engine.values()) {
+            List<Token> expected = new Lexer(input, engine).lex();
+            Assertions.assertEquals(new Token(Token.Type.IDENTIFIER, "crossing", 8190), expected.get(4095));
+            Assertions.assertEquals(10002, expected.get(4096).getLiteral().length());
+            Assertions.assertEquals(expected, new Lexer(new StringReader(input), engine).lex());
+            Assertions.assertEquals(expected, new Lexer(chunked(input, 7), engine).lex());
+        }
+    }
+
+    /**
+     * Returns a reader of the input which reads at most size chars at a time.
+     */
+    private static Reader chunked(String input, int size) {
+        return new FilterReader(new StringReader(input)) {
+            @Override
+            public int read(char[] buffer, int offset, int length) throws IOException {
+                return super.read(buffer, offset, Math.min(length, size));
+            }
+        };
+    }
+
+    @ParameterizedTest
+    @MethodSource("testExamples")
+    void testPacked(String test, String input, List<Token> expected) {
+        TokenBuffer tokens = new Lexer(input, Lexer.Engine.TABLE).lexPacked();
+        Assertions.assertEquals(expected.size(), tokens.size());
+        for (int i = 0; i < tokens.size(); i++) {
+            Assertions.assertEquals(expected.get(i), tokens.get(i));
+            Assertions.assertTrue(tokens.hasLiteral(i, expected.get(i).getLiteral()));
+        }
+    }
+
+    @Test
+    void testInternedSymbols() {
+        List<Token> tokens = new Lexer("FUN f(x) DO RETURN x && x; END", Lexer.Engine.TABLE).lex();
+        Assertions.assertSame("FUN", tokens.get(0).getLiteral());
+        Assertions.assertSame("&&", tokens.get(8).getLiteral());
+        Assertions.assertSame(tokens.get(3).getLiteral(), tokens.get(7).getLiteral());
+        Assertions.assertSame("RETURN", new Lexer(new StringReader("RETURN"), Lexer.Engine.REGEX).lex().get(0).getLiteral());
+    }
+
+    @Test
+    void testParallel() {
+        StringBuilder source = new StringBuilder();
+        for (int i = 0; i < 5000; i++) {
+            source.append("FUN f").append(i).append("(x: Integer): Integer DO\n    print(\"it's\");\n    RETURN x * -1.5;\nEND\n");
+        }
+        for (Lexer.Engine engine : Lexer.Engine.values()) {
+            Assertions.assertEquals(new Lexer(source.toString(), engine).lex(), new Lexer(source.toString(), engine).lexParallel());
+        }
+
+        source.append("LET c = '\n';\n");
+        ParseException expected = Assertions.assertThrows(ParseException.class,
+                () -> new Lexer(source.toString(), Lexer.Engine.TABLE).lex());
+        ParseException exception = Assertions.assertThrows(ParseException.class,
+                () -> new Lexer(source.toString(), Lexer.Engine.TABLE).lexParallel());
+        Assertions.assertEquals(expected, exception);
+    }
+
+    @ParameterizedTest
+    @MethodSource
+    void testTableEngineException(String test, String input, int index) {
+        ParseException regex = Assertions.assertThrows(ParseException.class,
+                () -> new Lexer(input).lex());
+        ParseException table = Assertions.assertThrows(ParseException.class,
+                () -> new Lexer(input, Lexer.Engine.TABLE).lex());
+        Assertions.assertEquals(index, table.getIndex());
+        Assertions.assertEquals(regex, table);
+    }
+
+    private static Stream<Arguments> testTableEngineException() {
+        return Stream.of(
+                Arguments.of("Unterminated String", "\"unterminated\n", 13),
+                Arguments.of("Invalid String Escape", "\"invalid\\escape\"", 9),
+                Arguments.of("Unicode Escape", "\"a\\u0000b\\u12ABc\"", 3),
+                Arguments.of("Empty Character", "''", 1),
+                Arguments.of("Multiple Characters", "'abc'", 2),
+                Arguments.of("Newline Character", "'\n'", 1),
+                Arguments.of("Unterminated Character", "'c", 2),
+                Arguments.of("Line Separator", "\u2028", 0)
+        );
+    }
+
     @Test
     void testException() {
         ParseException exception = Assertions.assertThrows(ParseException.class,
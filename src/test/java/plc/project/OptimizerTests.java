@@ -0,0 +1,151 @@
+package plc.project;
+
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+
+import java.io.ByteArrayOutputStream;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.stream.Stream;
+
+final class OptimizerTests {
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource
+    void testExpression(String test, String input, String expected) {
+        Ast ast = new Parser(new Lexer(input).lex()).parseExpression();
+        Scope scope = new Scope(null);
+        scope.defineVariable("x", "x", Environment.Type.INTEGER, true, Environment.NIL);
+        scope.defineVariable("b", "b", Environment.Type.BOOLEAN, true, Environment.NIL);
+        scope.defineVariable("d", "d", Environment.Type.DECIMAL, true, Environment.NIL);
+        new Analyzer(scope).visit(ast);
+        StringWriter writer = new StringWriter();
+        new Generator(new PrintWriter(writer)).visit(new Optimizer().visit(ast));
+        Assertions.assertEquals(expected, writer.toString());
+    }
+
+    private static Stream<Arguments> testExpression() {
+        return Stream.of(
+                Arguments.of("Integer", "1 + 2 * 3", "7"),
+                Arguments.of("Nested Group", "(1 + 2) * (x - 4 / 2)", "3 * (x - 2)"),
+                Arguments.of("Argument Group", "print((x + 1))", "System.out.println(x + 1)"),
+                Arguments.of("Concatenation", "\"a\" + \"b\" + 1 + 'c'", "\"ab1c\""),
+                Arguments.of("Comparison", "1 < 2 && 'a' == 'b'", "false"),
+                // folding either would change the generated Java's value
+                Arguments.of("Overflow", "2147483647 + 1", "2147483647 + 1"),
+                Arguments.of("Power", "2 ^ 3", "Math.pow(2, 3)"),
+                Arguments.of("Exact Decimal", "1.5 * 2.0", "3.00"),
+                Arguments.of("Inexact Decimal", "0.1 + 0.2", "0.1 + 0.2"),
+                Arguments.of("Decimal Concatenation", "\"a\" + 1.5", "\"a\" + 1.5"),
+                Arguments.of("Quote Concatenation", "\"q\" + '\"'", "\"q\" + '\"'"),
+                Arguments.of("String Comparison", "\"a\" == \"a\"", "\"a\" == \"a\""),
+                Arguments.of("Division By Zero", "x + 1 / 0", "x + 1 / 0"),
+                Arguments.of("Integer Identities", "(0 + x) * 1 - 0", "x"),
+                Arguments.of("Identity Group", "2 * (x * 1)", "2 * x"),
+                Arguments.of("Boolean Identities", "TRUE && (b || FALSE)", "b"),
+                Arguments.of("Short Circuit", "FALSE && b", "false"),
+                Arguments.of("Decimal Identity", "d * 1.0", "d * 1.0")
+        );
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource
+    void testGenerator(String test, String input, String expected) {
+        Ast ast = new Parser(new Lexer(input).lex()).parseSource();
+        new Analyzer(new Scope(null)).visit(ast);
+        StringWriter writer = new StringWriter();
+        new Generator(new PrintWriter(writer)).visit(new Optimizer().visit(ast));
+        Assertions.assertEquals(expected, writer.toString());
+    }
+
+    private static Stream<Arguments> testGenerator() {
+        return Stream.of(
+                // FUN unused(): Integer DO RETURN 1; END
+                // FUN used(): Integer DO RETURN 2; END
+                // FUN main(): Integer DO
+                //     IF 1 < 2 DO print(used()); ELSE print(unused()); END
+                //     WHILE FALSE DO print(3); END
+                //     IF FALSE DO print(4); ELSE LET y = 2; print(y); END
+                //     RETURN 0;
+                //     print(5);
+                // END
+                Arguments.of("Dead Code",
+                        "FUN unused(): Integer DO RETURN 1; END FUN used(): Integer DO RETURN 2; END FUN main(): Integer DO IF 1 < 2 DO print(used()); ELSE print(unused()); END WHILE FALSE DO print(3); END IF FALSE DO print(4); ELSE LET y = 2; print(y); END RETURN 0; print(5); END",
+                        String.join(System.lineSeparator(),
+                                "public class Main {",
+                                "",
+                                "    public static void main(String[] args) {",
+                                "        System.exit(new Main().main());",
+                                "    }",
+                                "",
+                                "    int used() {",
+                                "        return 2;",
+                                "    }",
+                                "",
+                                "    int main() {",
+                                "        System.out.println(used());",
+                                "        if (true) {",
+                                "            int y = 2;",
+                                "            System.out.println(y);",
+                                "        }",
+                                "        return 0;",
+                                "    }",
+                                "",
+                                "}"
+                        )
+                )
+        );
+    }
+
+    @ParameterizedTest(name = "{0}")
+    @MethodSource
+    void testSource(String test, String input) {
+        Ast.Source ast = new Parser(new Lexer(input).lex()).parseSource();
+        new Analyzer(new Scope(null)).visit(ast);
+        Ast.Source optimized = new Optimizer().visit(ast);
+        Assertions.assertNotEquals(ast, optimized);
+        for (Interpreter.Engine engine : Interpreter.Engine.values()) {
+            Assertions.assertEquals(run(ast, engine), run(optimized, engine), engine.name());
+        }
+    }
+
+    private static Stream<Arguments> testSource() {
+        return Stream.of(
+                Arguments.of("Arithmetic",
+                        "VAR x: Integer = 2 * 3; FUN main(): Integer DO LET d: Decimal = 1.25 + 0.5; print(d); print(\"x = \" + (x + 0)); RETURN (x * 1 + 3) / (4 - 2); END"
+                ),
+                Arguments.of("Conditions",
+                        "FUN main(): Integer DO LET i = 0; WHILE TRUE && i < 2 + 1 DO i = i + 1; END IF FALSE || i == 3 DO RETURN i * (2 - 1); END RETURN 0; END"
+                ),
+                // f is only called by g, which is only called by main
+                Arguments.of("Dead Code",
+                        "VAR x: Integer = 1; FUN f(): Integer DO RETURN x; END FUN g(): Integer DO IF TRUE DO RETURN f(); END RETURN 2; END FUN h(): Integer DO RETURN g(); END FUN main(): Integer DO LET i = 0; WHILE FALSE DO i = h(); END WHILE i < 3 DO IF 2 > 1 DO i = i + g(); ELSE RETURN h(); END END RETURN i; print(i); END"
+                ),
+                Arguments.of("Error",
+                        "FUN main(): Integer DO print(1 + 1); RETURN 1 / (1 - 1); END"
+                )
+        );
+    }
+
+    /**
+     * Runs a source with an engine, returning its output and result (or
+     * exception).
+     */
+    private static String run(Ast.Source ast, Interpreter.Engine engine) {
+        PrintStream sysout = System.out;
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        System.setOut(new PrintStream(out));
+        try {
+            Object result = new Interpreter(new Scope(null), engine).visit(ast).getValue();
+            return out + "" + result;
+        } catch (RuntimeException ex) {
+            return out + ex.getClass().getName() + ": " + ex.getMessage();
+        } finally {
+            System.setOut(sysout);
+        }
+    }
+
+}
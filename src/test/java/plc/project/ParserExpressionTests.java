@@ -251,6 +251,28 @@ final class ParserExpressionTests {
                                         new Ast.Expression.Access(Optional.empty(), "expr3")
                                 )
                         )
+                ),
+                Arguments.of("Left Associative",
+                        Arrays.asList(
+                                //expr1 * expr2 - expr3 + expr4
+                                new Token(Token.Type.IDENTIFIER, "expr1", 0),
+                                new Token(Token.Type.OPERATOR, "*", 6),
+                                new Token(Token.Type.IDENTIFIER, "expr2", 8),
+                                new Token(Token.Type.OPERATOR, "-", 14),
+                                new Token(Token.Type.IDENTIFIER, "expr3", 16),
+                                new Token(Token.Type.OPERATOR, "+", 22),
+                                new Token(Token.Type.IDENTIFIER, "expr4", 24)
+                        ),
+                        new Ast.Expression.Binary("+",
+                                new Ast.Expression.Binary("-",
+                                        new Ast.Expression.Binary("*",
+                                                new Ast.Expression.Access(Optional.empty(), "expr1"),
+                                                new Ast.Expression.Access(Optional.empty(), "expr2")
+                                        ),
+                                        new Ast.Expression.Access(Optional.empty(), "expr3")
+                                ),
+                                new Ast.Expression.Access(Optional.empty(), "expr4")
+                        )
                 )
         );
     }
@@ -376,6 +398,17 @@ final class ParserExpressionTests {
                                 new Token(Token.Type.OPERATOR, "?", 7)
                         ),
                         new ParseException("Invalid operand", 6)
+                ),
+                Arguments.of("Invalid Nested Comparison",
+                        Arrays.asList(
+                                //expr1 && expr2 < ?
+                                new Token(Token.Type.IDENTIFIER, "expr1", 0),
+                                new Token(Token.Type.OPERATOR, "&&", 6),
+                                new Token(Token.Type.IDENTIFIER, "expr2", 9),
+                                new Token(Token.Type.OPERATOR, "<", 15),
+                                new Token(Token.Type.OPERATOR, "?", 17)
+                        ),
+                        new ParseException("Invalid logic", 16)
                 )
         );
     }
@@ -1170,6 +1170,97 @@ final class ParserTests {
         test(input, expected, Parser::parseSource);
     }
 
+    @Test
+    void testPullMode() {
+        String source = "VAR first: Integer = 1;\nFUN main() DO\n    WHILE first != 10 DO\n        print(first);\n        first = first + 1;\n    END\nEND";
+        Ast.Source expected = new Parser(new Lexer(source).lex()).parseSource();
+        Assertions.assertEquals(expected, new Parser(new Lexer(source)).parseSource());
+    }
+
+    @Test
+    void testPackedTokens() {
+        String source = "VAR first: Integer = 1;\nFUN main() DO\n    WHILE first != 10 DO\n        print(first);\n        first = first + 1;\n    END\nEND";
+        Ast.Source expected = new Parser(new Lexer(source).lex()).parseSource();
+        Assertions.assertEquals(expected, new Parser(new Lexer(source, Lexer.Engine.TABLE).lexPacked()).parseSource());
+    }
+
+    @Test
+    void testPullModeLexError() {
+        String source = "FUN main() DO\n    print(\"unterminated);\nEND";
+        ParseException expected = Assertions.assertThrows(ParseException.class, () -> new Lexer(source).lex());
+        ParseException pe = Assertions.assertThrows(ParseException.class, () -> new Parser(new Lexer(source)).parseSource());
+        Assertions.assertEquals(expected, pe);
+    }
+
+    @Test
+    void testParallelFunctions() {
+        StringBuilder source = new StringBuilder("VAR total: Integer = 0;\n");
+        for (int i = 0; i < 200; i++) {
+            source.append("FUN f").append(i).append("(x: Integer): Integer DO\n")
+                    .append("    IF x > 0 DO\n        total = total + x;\n    ELSE\n        total = total - 1;\n    END\n")
+                    .append("    SWITCH x\n        CASE 1: print(x);\n        DEFAULT WHILE x > 0 DO x = x - 1; END\n    END\n")
+                    .append("    RETURN total;\nEND\n");
+        }
+        List<Token> tokens = new Lexer(source.toString()).lex();
+        Ast.Source expected = new Parser(tokens).parseSource();
+        Assertions.assertEquals(expected, new Parser(tokens).parseSourceParallel());
+        Assertions.assertEquals(expected, new Parser(new Lexer(source.toString(), Lexer.Engine.TABLE).lexPacked()).parseSourceParallel());
+
+        List<Token> invalid = new Lexer(source.toString().replace("FUN f150(x: Integer): Integer DO", "FUN f150(x: Integer): Integer")).lex();
+        ParseException exception = Assertions.assertThrows(ParseException.class, () -> new Parser(invalid).parseSource());
+        Assertions.assertEquals(exception, Assertions.assertThrows(ParseException.class, () -> new Parser(invalid).parseSourceParallel()));
+    }
+
+    @Test
+    void testLazyFunctions() {
+        String source = "FUN unused() DO\n    LET x = ;\nEND\nFUN main(): Integer DO\n    IF TRUE DO\n        print(1);\n    END\n    RETURN 0;\nEND";
+        Ast.Source ast = new Parser(new Lexer(source).lex()).parseSourceLazy();
+        Assertions.assertFalse(ast.getFunctions().get(0).isParsed());
+        Assertions.assertFalse(ast.getFunctions().get(1).isParsed());
+
+        ParseException exception = Assertions.assertThrows(ParseException.class, () -> new Parser(new Lexer(source).lex()).parseSource());
+        Assertions.assertEquals(exception, Assertions.assertThrows(ParseException.class, () -> ast.getFunctions().get(0).getStatements()));
+        Assertions.assertEquals(2, ast.getFunctions().get(1).getStatements().size());
+        Assertions.assertTrue(ast.getFunctions().get(1).isParsed());
+    }
+
+    @Test
+    void testLazyKeywordIdentifiers() {
+        // END, DO and CASE are only keywords where the parser expects them
+        String source = "FUN main(): Integer DO\n    LET END = 1;\n    IF DO DO DO = END; END ELSE DO = END + 1; END\n    SWITCH CASE CASE CASE: print(END); DEFAULT END\n    RETURN END;\nEND\nFUN f() DO\nEND";
+        List<Token> tokens = new Lexer(source).lex();
+        Ast.Source ast = new Parser(tokens).parseSourceLazy();
+        Assertions.assertFalse(ast.getFunctions().get(0).isParsed());
+        Assertions.assertEquals(new Parser(tokens).parseSource(), ast);
+
+        // A malformed body is still reported at the error within it
+        String invalid = "FUN main() DO\n    LET z = z[y / TRUE] / \"s\"END;\nEND";
+        ParseException exception = Assertions.assertThrows(ParseException.class, () -> new Parser(new Lexer(invalid).lex()).parseSource());
+        Ast.Source lazy = new Parser(new Lexer(invalid).lex()).parseSourceLazy();
+        Assertions.assertEquals(exception, Assertions.assertThrows(ParseException.class, () -> lazy.getFunctions().get(0).getStatements()));
+    }
+
+    @Test
+    void testIncrementalEdit() {
+        String source = "VAR x: Integer = 1;\nFUN f(): Integer DO\n    RETURN x;\nEND\nFUN main(): Integer DO\n    print(f());\n    RETURN 0;\nEND";
+        List<Token> tokens = new Lexer(source).lex();
+        IncrementalParser parser = new IncrementalParser(source, tokens, new Parser(tokens).parseSource());
+        Ast.Function main = parser.getSource().getFunctions().get(1);
+
+        // RETURN x; => RETURN x + 10;
+        String edited = source.replace("RETURN x;", "RETURN x + 10;");
+        Ast.Source ast = parser.edit(source.indexOf("x;"), 1, "x + 10");
+        Assertions.assertEquals(edited, parser.getInput());
+        Assertions.assertEquals(new Parser(new Lexer(edited).lex()).parseSource(), ast);
+        Assertions.assertEquals(new Lexer(edited).lex().toString(), parser.getTokens().toString());
+        Assertions.assertSame(main, ast.getFunctions().get(1));
+
+        // Removing the END of f is reported as by a full parse
+        String invalid = edited.replace("x + 10;\nEND", "x + 10;\n");
+        ParseException exception = Assertions.assertThrows(ParseException.class, () -> new Parser(new Lexer(invalid).lex()).parseSource());
+        Assertions.assertEquals(exception, Assertions.assertThrows(ParseException.class, () -> parser.edit(edited.indexOf("END"), 3, "")));
+    }
+
     /**
      * Standard test function. If expected is null, a ParseException is expected
      * to be thrown (not used in the provided tests).